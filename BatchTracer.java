@@ -0,0 +1,424 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Solves many board files in one JVM, so JVM startup and JIT warm-up are paid
+ * once per job instead of once per board. Boards are given as files,
+ * directories (every .dat file in them), glob patterns such as boards/valid*.dat
+ * or @manifest files listing one board file per line.
+ *
+ * The work runs as three stages connected by bounded queues: one thread loads
+ * boards, a pool of worker threads solves them and the main thread writes the
+ * results. A stage that gets ahead of the next one blocks until there is room
+ * in its queue, so only a few boards are in memory at any time.
+ *
+ * Each board's solutions are written to its own .out file in the output
+ * directory, in the same format as java CircuitTracer -c, and a board that
+ * cannot be read gets the same error message the single-file program prints.
+ * A summary of every board is printed and written to summary.txt.
+ *
+ * With -r, results are looked up in and added to a ResultCache shared by all
+ * of the workers, so a board repeated in the batch is only solved once.
+ *
+ * To RUN: java BatchTracer [-s|-q|-a|-i|-d|-m] [-b] [-f] [-r cache] [-t threads] [-o directory] board ...
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class BatchTracer {
+    /**
+     * boards waiting between stages for each worker thread
+     */
+    private static final int QUEUED_PER_WORKER = 2;
+    private static final String DEFAULT_OUTPUT = "results";
+    private static final String SUMMARY_FILE = "summary.txt";
+
+    /**
+     * Run a batch.
+     *
+     * @param args search mode, options and the boards to solve
+     */
+    public static void main(String[] args) {
+        String searchMode = null;
+        boolean bounded = false;
+        boolean spill = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path outputDirectory = Paths.get(DEFAULT_OUTPUT);
+        Path cacheDirectory = null;
+        ArrayList<String> inputs = new ArrayList<String>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-s":
+                    case "-q":
+                    case "-a":
+                    case "-i":
+                    case "-d":
+                    case "-m":
+                        if (searchMode != null) {
+                            printUsage();
+                            return;
+                        }
+                        searchMode = args[i];
+                        break;
+                    case "-b":
+                        bounded = true;
+                        break;
+                    case "-f":
+                        spill = true;
+                        break;
+                    case "-t":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-o":
+                        outputDirectory = Paths.get(args[++i]);
+                        break;
+                    case "-r":
+                        cacheDirectory = Paths.get(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("-")) {
+                            printUsage();
+                            return;
+                        }
+                        inputs.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            printUsage();
+            return;
+        }
+        if (searchMode == null || inputs.isEmpty() || threads < 1) {
+            printUsage();
+            return;
+        }
+        try {
+            List<Path> boards = findBoards(inputs);
+            Files.createDirectories(outputDirectory);
+            ResultCache cache = (cacheDirectory == null) ? null : new ResultCache(cacheDirectory);
+            new BatchTracer(searchMode, bounded, spill, threads, outputDirectory, cache).run(boards);
+        } catch (IOException e) {
+            System.err.println(CircuitTracer.errorMessage(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Print instructions for running BatchTracer from the command line.
+     */
+    private static void printUsage() {
+        System.out.println("To USE: java BatchTracer <search mode> [options] board ...");
+        System.out.println("search mode: -s, -q, -a, -i, -d or -m, as for java CircuitTracer.");
+        System.out.println("options: -b bounded search, -f spill search states to temporary files,");
+        System.out.println("         -r <directory> reuse and save results in a cache directory,");
+        System.out.println("         -t <threads> number of boards solved at once (default: one per processor),");
+        System.out.println("         -o <directory> where the .out files and " + SUMMARY_FILE + " go (default: " + DEFAULT_OUTPUT + ").");
+        System.out.println("board: a board file, a directory of .dat files, a glob such as boards/valid*.dat,");
+        System.out.println("       or @file for a manifest listing one board file per line.");
+        System.out.println("EXAMPLE: java BatchTracer -d -t 4 -o results ./boards");
+    }
+
+    /**
+     * Expand the command line inputs into a list of board files.
+     *
+     * @param inputs files, directories, globs and @manifests
+     * @return every board file, in the order given
+     * @throws IOException if a directory or manifest cannot be read
+     */
+    private static List<Path> findBoards(List<String> inputs) throws IOException {
+        ArrayList<Path> boards = new ArrayList<Path>();
+        for (String input : inputs) {
+            if (input.startsWith("@")) {    //manifest, skipping blank lines and # comments
+                for (String line : Files.readAllLines(Paths.get(input.substring(1)))) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        boards.add(Paths.get(line));
+                    }
+                }
+            } else if (input.indexOf('*') >= 0 || input.indexOf('?') >= 0 || input.indexOf('[') >= 0 || input.indexOf('{') >= 0) {
+                Path pattern = Paths.get(input);
+                Path parent = (pattern.getParent() == null) ? Paths.get(".") : pattern.getParent();
+                addSorted(boards, Files.newDirectoryStream(parent, pattern.getFileName().toString()));
+            } else if (Files.isDirectory(Paths.get(input))) {
+                addSorted(boards, Files.newDirectoryStream(Paths.get(input), "*.dat"));
+            } else {
+                boards.add(Paths.get(input));   //missing files are reported when they are loaded
+            }
+        }
+        return boards;
+    }
+
+    /**
+     * Add the regular files of a directory listing in name order, then close the listing.
+     */
+    private static void addSorted(List<Path> boards, DirectoryStream<Path> listing) throws IOException {
+        ArrayList<Path> files = new ArrayList<Path>();
+        try (listing) {
+            for (Path file : listing) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        boards.addAll(files);
+    }
+
+    private final String searchMode;
+    private final boolean bounded;
+    private final boolean spill;
+    private final int threads;
+    private final Path outputDirectory;
+    /**
+     * results shared by all of the workers, null if not caching
+     */
+    private final ResultCache cache;
+    /**
+     * loaded boards waiting for a worker, then solved boards waiting to be written
+     */
+    private final BlockingQueue<Job> loaded;
+    private final BlockingQueue<Job> solved;
+
+    /**
+     * Set up a batch with the given options.
+     *
+     * @param searchMode      search option for every board
+     * @param bounded         true for a bounded search
+     * @param spill           true to spill search states to temporary files
+     * @param threads         number of worker threads
+     * @param outputDirectory existing directory for the results
+     * @param cache           cache to look up and save results in, null for none
+     */
+    public BatchTracer(String searchMode, boolean bounded, boolean spill, int threads, Path outputDirectory, ResultCache cache) {
+        this.searchMode = searchMode;
+        this.bounded = bounded;
+        this.spill = spill;
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+        this.cache = cache;
+        loaded = new ArrayBlockingQueue<Job>(QUEUED_PER_WORKER * threads);
+        solved = new ArrayBlockingQueue<Job>(QUEUED_PER_WORKER * threads);
+    }
+
+    /**
+     * Solve every board, writing its results and then the summary.
+     *
+     * @param boards board files to solve
+     * @throws IOException          if a result file cannot be written
+     * @throws InterruptedException if interrupted while waiting for a stage
+     */
+    public void run(List<Path> boards) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ArrayList<Thread> stages = new ArrayList<Thread>();
+        stages.add(new Thread(() -> load(boards), "BatchTracer-loader"));
+        for (int i = 0; i < threads; i++) {
+            stages.add(new Thread(this::solveAll, "BatchTracer-worker-" + i));
+        }
+        for (Thread stage : stages) {
+            stage.setDaemon(true);  //a failed writer must not leave the JVM running
+            stage.start();
+        }
+
+        Job[] results = new Job[boards.size()];
+        Set<String> outputNames = new HashSet<String>();
+        int finishedWorkers = 0;
+        while (finishedWorkers < threads) {
+            Job job = solved.take();
+            if (job.isEnd()) {
+                finishedWorkers++;
+                continue;
+            }
+            write(job, outputNames);
+            results[job.index] = job;
+            job.board = null;   //the summary only needs the counts
+            job.solutions = null;
+        }
+        writeSummary(results, System.nanoTime() - start);
+    }
+
+    /**
+     * Loader stage: read each board and pass it on, then tell every worker to stop.
+     */
+    private void load(List<Path> boards) {
+        try {
+            for (int i = 0; i < boards.size(); i++) {
+                Job job = new Job(i, boards.get(i));
+                long start = System.nanoTime();
+                try {
+                    job.board = BoardLoader.load(job.file.toString());
+                } catch (Throwable e) {     //even an Error only fails this board
+                    job.error = e;
+                }
+                job.loadNanos = System.nanoTime() - start;
+                loaded.put(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            end(loaded, threads);
+        }
+    }
+
+    /**
+     * Worker stage: solve boards until the loader has no more.
+     */
+    private void solveAll() {
+        try {
+            Job job = loaded.take();
+            while (!job.isEnd()) {
+                if (job.error == null) {
+                    long start = System.nanoTime();
+                    try {
+                        job.solutions = (cache == null) ? null : cache.get(job.board);
+                        if (job.solutions == null) {
+                            job.solutions = CircuitTracer.solve(job.board, searchMode, bounded, spill, 1);
+                            if (cache != null) {
+                                cache.put(job.board, job.solutions);
+                            }
+                        }
+                    } catch (Throwable e) {     //even a StackOverflowError or OutOfMemoryError only fails this board
+                        job.error = e;
+                    }
+                    job.solveNanos = System.nanoTime() - start;
+                }
+                solved.put(job);
+                job = loaded.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            end(solved, 1);
+        }
+    }
+
+    /**
+     * Tell the next stage that a stage is done, however it finished, so that
+     * the next stage never waits for it forever.
+     *
+     * @param queue queue the next stage takes jobs from
+     * @param count number of END jobs to post
+     */
+    private static void end(BlockingQueue<Job> queue, int count) {
+        boolean interrupted = Thread.interrupted();     //post the END jobs anyway, then restore the interrupt
+        try {
+            for (int i = 0; i < count; i++) {
+                queue.put(Job.END);
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writer stage: write one board's solutions, or its error message, to its .out file.
+     *
+     * @param job         solved board
+     * @param outputNames names of the .out files already written, so boards with the same name do not overwrite each other
+     */
+    private void write(Job job, Set<String> outputNames) throws IOException {
+        String name = job.file.getFileName() + ".out";
+        for (int copy = 2; !outputNames.add(name); copy++) {
+            name = job.file.getFileName() + "-" + copy + ".out";
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputDirectory.resolve(name)))) {
+            if (job.error != null) {
+                String message = CircuitTracer.errorMessage(job.error);
+                System.err.println(job.file + ":" + message);
+                out.write((message + System.lineSeparator()).getBytes());
+            } else if (!job.solutions.isEmpty()) {
+                TracerEvents.SolutionOutputEvent event = new TracerEvents.SolutionOutputEvent();
+                event.begin();
+                SolutionWriter writer = new SolutionWriter(out, job.board);
+                for (TraceState solution : job.solutions) {
+                    writer.write(solution);
+                }
+                writer.flush();
+                event.board = job.file.toString();
+                event.solutions = job.solutions.size();
+                event.commit();
+            }
+        }
+        job.solutionCount = (job.solutions == null) ? 0 : job.solutions.size();
+        job.shortestLength = (job.solutionCount == 0) ? 0 : job.solutions.getFirst().pathLength();
+    }
+
+    /**
+     * Print the summary and write it to summary.txt.
+     *
+     * @param results     every board, in input order
+     * @param elapsedNanos time taken by the whole batch
+     */
+    private void writeSummary(Job[] results, long elapsedNanos) throws IOException {
+        try (PrintStream summary = new PrintStream(Files.newOutputStream(outputDirectory.resolve(SUMMARY_FILE)))) {
+            for (PrintStream out : new PrintStream[]{System.out, summary}) {
+                int failed = 0;
+                long solutions = 0;
+                out.printf("%-40s %-6s %10s %8s %10s %10s%n", "Board", "Result", "Solutions", "Length", "Load ms", "Solve ms");
+                for (Job job : results) {
+                    out.printf("%-40s %-6s %10d %8d %10.1f %10.1f%n", job.file, job.error == null ? "ok" : "error",
+                            job.solutionCount, job.shortestLength, job.loadNanos / 1e6, job.solveNanos / 1e6);
+                    failed += (job.error == null) ? 0 : 1;
+                    solutions += job.solutionCount;
+                }
+                out.printf("%d boards, %d failed, %d solutions, %d threads, %.1f s%n",
+                        results.length, failed, solutions, threads, elapsedNanos / 1e9);
+                if (cache != null) {
+                    out.println(cache);
+                }
+            }
+        }
+    }
+
+    /**
+     * One board as it passes through the stages.
+     */
+    private static class Job {
+        /**
+         * marker a stage passes on when it has no more boards
+         */
+        private static final Job END = new Job(-1, null);
+
+        private final int index;
+        private final Path file;
+        private CircuitBoard board;
+        private ArrayList<TraceState> solutions;
+        private Throwable error;
+        private long loadNanos;
+        private long solveNanos;
+        private int solutionCount;
+        private int shortestLength;
+
+        /**
+         * @param index position of the board in the batch
+         * @param file  board file
+         */
+        Job(int index, Path file) {
+            this.index = index;
+            this.file = file;
+        }
+
+        /**
+         * @return true for the END marker
+         */
+        boolean isEnd() {
+            return this == END;
+        }
+    }
+
+} // class BatchTracer
@@ -0,0 +1,318 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Finds every shortest trace with a breadth-first search that grows from the
+ * '1' and the '2' at the same time. The smaller of the two frontiers is
+ * expanded one layer at a time until the frontiers meet, so each side only
+ * covers about half the distance between the components, instead of one
+ * search covering all of it.
+ *
+ * Every shortest trace passes through exactly one position of a meeting
+ * layer, a fixed number of steps from '1', where both distances are known.
+ * The positions on shortest traces are marked by walking back from the
+ * meeting layer towards '1' and on towards '2', and the traces are then built
+ * by walking the marked positions from '1', one step further each time.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class BidirectionalTracer {
+    /**
+     * marks a position a frontier has not reached
+     */
+    private static final int UNREACHED = -1;
+
+    private final CircuitBoard board;
+    private final int ROWS;
+    private final int COLS;
+    /**
+     * distance from '1' of each position the start frontier reached, indexed by row * COLS + col
+     */
+    private final int[] fromStart;
+    /**
+     * distance from '2' of each position the end frontier reached, indexed by row * COLS + col
+     */
+    private final int[] fromEnd;
+    /**
+     * true for each position on at least one shortest trace
+     */
+    private final boolean[] onPath;
+    /**
+     * number of positions in a shortest trace, or 0 if there is no trace
+     */
+    private final int shortestLength;
+    /**
+     * distance from '1' of the meeting layer every shortest trace crosses
+     */
+    private final int meetingDistance;
+    /**
+     * number of positions reached by either frontier
+     */
+    private int explored = 0;
+
+    /**
+     * Search from both components until the frontiers meet.
+     *
+     * @param board board to trace
+     */
+    public BidirectionalTracer(CircuitBoard board) {
+        this.board = board;
+        ROWS = board.numRows();
+        COLS = board.numCols();
+        fromStart = new int[ROWS * COLS];
+        fromEnd = new int[ROWS * COLS];
+        onPath = new boolean[ROWS * COLS];
+        Arrays.fill(fromStart, UNREACHED);
+        Arrays.fill(fromEnd, UNREACHED);
+
+        Frontier start = new Frontier(fromStart, board.getStartingPoint());
+        Frontier end = new Frontier(fromEnd, board.getEndingPoint());
+        int shortest = start.meeting(end);
+        while (shortest == 0 && !start.isEmpty() && !end.isEmpty()) {
+            Frontier smaller = (start.size() <= end.size()) ? start : end;
+            Frontier other = (smaller == start) ? end : start;
+            smaller.expand();
+            shortest = smaller.meeting(other);
+        }
+        shortestLength = shortest;
+        //every position at this distance from '1' on a shortest trace has been reached from both sides
+        meetingDistance = Math.max(1, shortest + 1 - end.depth);
+        if (shortestLength > 0) {
+            markShortestPaths();
+        }
+    }
+
+    /**
+     * Mark the positions of the meeting layer that lie on shortest traces,
+     * then everything on a shortest trace between them and each component.
+     */
+    private void markShortestPaths() {
+        ArrayList<Integer> meeting = new ArrayList<Integer>();
+        for (int index = 0; index < ROWS * COLS; index++) {
+            if (fromStart[index] == meetingDistance && fromEnd[index] == shortestLength + 1 - meetingDistance) {
+                onPath[index] = true;
+                meeting.add(index);
+            }
+        }
+        markTowards(fromStart, meeting);
+        markTowards(fromEnd, meeting);
+    }
+
+    /**
+     * Mark every position that is one step closer to a component than a
+     * marked position, starting from the meeting layer.
+     *
+     * @param distance distances from the component to walk towards
+     * @param meeting  positions of the meeting layer on shortest traces
+     */
+    private void markTowards(int[] distance, ArrayList<Integer> meeting) {
+        int[] queue = new int[ROWS * COLS];
+        int head = 0;
+        int tail = 0;
+        for (int index : meeting) {
+            queue[tail++] = index;
+        }
+        while (head < tail) {
+            int index = queue[head++];
+            int row = index / COLS;
+            int col = index % COLS;
+            for (int i = -1; i <= 1; i += 2) {
+                tail = mark(distance, queue, tail, row + i, col, distance[index] - 1);
+                tail = mark(distance, queue, tail, row, col + i, distance[index] - 1);
+            }
+        }
+    }
+
+    /**
+     * Mark (row, col) and add it to the queue if it is at the given distance
+     * and not marked yet.
+     *
+     * @return new tail of the queue
+     */
+    private int mark(int[] distance, int[] queue, int tail, int row, int col, int steps) {
+        if (row < 0 || row >= ROWS || col < 0 || col >= COLS || steps < 1) {
+            return tail;
+        }
+        int index = row * COLS + col;
+        if (distance[index] == steps && !onPath[index]) {
+            onPath[index] = true;
+            queue[tail++] = index;
+        }
+        return tail;
+    }
+
+    /**
+     * @return number of positions in a shortest trace, or 0 if '1' cannot be connected to '2'
+     */
+    public int shortestPathLength() {
+        return shortestLength;
+    }
+
+    /**
+     * @return number of positions reached by the two frontiers, counting positions reached by both twice
+     */
+    public int exploredPositions() {
+        return explored;
+    }
+
+    /**
+     * Walk the marked positions from '1' to build every shortest trace,
+     * moving one step further from '1' up to the meeting layer and one step
+     * closer to '2' after it.
+     *
+     * @return all shortest traces, empty if there are none
+     */
+    public ArrayList<TraceState> getShortestPaths() {
+        ArrayList<TraceState> bestPaths = new ArrayList<TraceState>();
+        forEachShortestPath(bestPaths::add);
+        return bestPaths;
+    }
+
+    /**
+     * Same walk as getShortestPaths(), handing each shortest trace to action
+     * as soon as it is built instead of collecting them all.
+     *
+     * @param action receives every shortest trace, never called if there are none
+     */
+    public void forEachShortestPath(Consumer<? super TraceState> action) {
+        if (shortestLength == 0) {
+            return;
+        }
+        Storage<TraceState> stateStore = new Storage<TraceState>(Storage.DataStructure.arrayStack);
+        Point start = board.getStartingPoint();
+        for (int i = -1; i <= 1; i += 2) {  //create initial TraceStates
+            if (isStep(1, start.x + i, start.y)) {
+                stateStore.store(new TraceState(board, start.x + i, start.y));
+            }
+            if (isStep(1, start.x, start.y + i)) {
+                stateStore.store(new TraceState(board, start.x, start.y + i));
+            }
+        }
+        while (!stateStore.isEmpty()) {
+            TraceState current = stateStore.retrieve();
+            if (current.pathLength() == shortestLength) {
+                action.accept(current);
+                continue;
+            }
+            int row = current.getRow();
+            int col = current.getCol();
+            int next = current.pathLength() + 1;
+            for (int i = -1; i <= 1; i += 2) {
+                if (isStep(next, row + i, col)) {
+                    stateStore.store(new TraceState(current, row + i, col));
+                }
+                if (isStep(next, row, col + i)) {
+                    stateStore.store(new TraceState(current, row, col + i));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if (row, col) can be position number step of a shortest trace
+     */
+    private boolean isStep(int step, int row, int col) {
+        if (row < 0 || row >= ROWS || col < 0 || col >= COLS || !onPath[row * COLS + col]) {
+            return false;
+        }
+        int index = row * COLS + col;
+        if (step <= meetingDistance) {
+            return fromStart[index] == step;
+        }
+        return fromEnd[index] == shortestLength + 1 - step;
+    }
+
+    /**
+     * Breadth-first search from one component, expanded a whole layer at a time.
+     */
+    private class Frontier {
+        private final int[] distance;
+        private final int[] queue = new int[ROWS * COLS];
+        /**
+         * the newest layer is queue[head] to queue[tail - 1]
+         */
+        private int head = 0;
+        private int tail = 0;
+        /**
+         * distance of the newest layer - every position up to this distance has been reached
+         */
+        private int depth = 1;
+
+        /**
+         * Start a search with the open positions next to component as its first layer.
+         *
+         * @param distance  distances to fill in, all UNREACHED
+         * @param component position of '1' or '2'
+         */
+        Frontier(int[] distance, Point component) {
+            this.distance = distance;
+            for (int i = -1; i <= 1; i += 2) {
+                visit(component.x + i, component.y);
+                visit(component.x, component.y + i);
+            }
+        }
+
+        /**
+         * @return true if the search has reached everything it can
+         */
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        /**
+         * @return number of positions in the newest layer
+         */
+        int size() {
+            return tail - head;
+        }
+
+        /**
+         * Replace the newest layer with every open position one step further away.
+         */
+        void expand() {
+            int layerEnd = tail;
+            depth++;
+            while (head < layerEnd) {
+                int index = queue[head++];
+                int row = index / COLS;
+                int col = index % COLS;
+                for (int i = -1; i <= 1; i += 2) {
+                    visit(row + i, col);
+                    visit(row, col + i);
+                }
+            }
+        }
+
+        /**
+         * Record the distance of an open, unvisited position and add it to the newest layer.
+         */
+        private void visit(int row, int col) {
+            if (board.isOpen(row, col) && distance[row * COLS + col] == UNREACHED) {
+                distance[row * COLS + col] = depth;
+                queue[tail++] = row * COLS + col;
+                explored++;
+            }
+        }
+
+        /**
+         * Look for positions of the newest layer that the other search has reached.
+         *
+         * @param other search from the other component
+         * @return length of the shortest trace through such a position, 0 if there is none
+         */
+        int meeting(Frontier other) {
+            int shortest = 0;
+            for (int i = head; i < tail; i++) {
+                int index = queue[i];
+                if (other.distance[index] != UNREACHED) {
+                    int length = depth + other.distance[index] - 1;
+                    shortest = (shortest == 0 || length < shortest) ? length : shortest;
+                }
+            }
+            return shortest;
+        }
+    }
+
+} // class BidirectionalTracer
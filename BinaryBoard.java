@@ -0,0 +1,447 @@
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Compact binary board files, and a converter between them and the text
+ * board format. A text board takes two bytes per position and has to be
+ * parsed character by character; a binary board takes at most a quarter of a
+ * byte per position and is read straight into CircuitBoard's packed array.
+ *
+ * A binary board file is, in big-endian order:
+ * the 4 bytes 'C', 'T', 'B' and the format version 1,
+ * six ints: rows, columns, row and column of '1', row and column of '2',
+ * one byte giving how the positions are encoded, and then the positions
+ * in row-major order, either
+ * PACKED - 2 bits per position, 32 positions to a long, lowest bits first, or
+ * RUNS - each run of equal positions as a variable-length number holding
+ * the run length times 4 plus the position's code, 7 bits to a byte.
+ * The codes are 0 for 'O', 1 for 'X', 2 for 'T' and 3 for '1' or '2', the
+ * same codes CircuitBoard keeps in memory. The writer picks whichever
+ * encoding is smaller, so boards with large open or blocked areas are run
+ * length encoded and random boards are packed.
+ *
+ * BoardLoader.load and the CircuitBoard(String) constructor recognize binary
+ * files by their first four bytes, which can never begin a text board, so
+ * every tool accepts both formats.
+ *
+ * To CONVERT: java BinaryBoard [-p] input output
+ * A text input is written out as a binary board and a binary input as a
+ * text board. -p always packs the positions instead of choosing the smaller
+ * encoding.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class BinaryBoard {
+    /**
+     * first bytes of every binary board file, ending with the format version
+     */
+    private static final byte[] MAGIC = {'C', 'T', 'B', 1};
+    private static final int HEADER_BYTES = MAGIC.length + 6 * Integer.BYTES + 1;
+
+    //position encodings
+    private static final byte PACKED = 0;
+    private static final byte RUNS = 1;
+
+    /**
+     * every position in a long set to the same code is that code times this
+     */
+    private static final long REPEAT = 0x5555555555555555L;
+
+    /**
+     * Convert a board file between the text and binary formats.
+     *
+     * @param args optional -p, then the input and output files
+     */
+    public static void main(String[] args) {
+        boolean packed = args.length == 3 && args[0].equals("-p");
+        if (args.length != (packed ? 3 : 2)) {
+            printUsage();
+            return;
+        }
+        String input = args[args.length - 2];
+        String output = args[args.length - 1];
+        try {
+            boolean binary = isBinary(input);
+            CircuitBoard board = BoardLoader.load(input);
+            if (binary) {
+                writeText(board, output);
+            } else {
+                write(board, output, packed);
+            }
+            System.out.println(input + " (" + (binary ? "binary" : "text") + ", " + new File(input).length()
+                    + " bytes) -> " + output + " (" + (binary ? "text" : "binary") + ", " + new File(output).length() + " bytes)");
+        } catch (IOException | InvalidFileFormatException | UncheckedIOException e) {
+            System.out.println(CircuitTracer.errorMessage(e));
+        }
+    }
+
+    /**
+     * Print instructions for running BinaryBoard from the command line.
+     */
+    private static void printUsage() {
+        System.out.println("To USE: java BinaryBoard [-p] input output");
+        System.out.println("A text board is converted to a binary board and a binary board to a text board.");
+        System.out.println("-p pack every position in 2 bits instead of choosing the smaller encoding.");
+        System.out.println("EXAMPLE: java BinaryBoard boards/valid1.dat valid1.ctb");
+    }
+
+    /**
+     * @param contents bytes of a board file, checked from index 0 whatever the buffer's position
+     * @return true if contents start like a binary board
+     */
+    public static boolean isBinary(ByteBuffer contents) {
+        if (contents.limit() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (contents.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param filename board file
+     * @return true if the file starts like a binary board
+     * @throws FileNotFoundException if the file cannot be opened
+     */
+    public static boolean isBinary(String filename) throws FileNotFoundException {
+        try (FileInputStream in = new FileInputStream(filename)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a binary board file.
+     *
+     * @param filename binary board file
+     * @return board read from filename
+     * @throws FileNotFoundException      if the file cannot be opened
+     * @throws InvalidFileFormatException for any file formatting or content issue
+     */
+    public static CircuitBoard read(String filename) throws FileNotFoundException {
+        try (FileInputStream in = new FileInputStream(filename); FileChannel channel = in.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new InvalidFileFormatException(filename + " has too many rows.");
+            }
+            return read(filename, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a binary board already in memory.
+     *
+     * @param name     name used for the board in error messages
+     * @param contents the whole board file, from index 0
+     * @return board read from contents
+     * @throws InvalidFileFormatException for any file formatting or content issue
+     */
+    public static CircuitBoard read(String name, ByteBuffer contents) {
+        return read(name, contents, Long.MAX_VALUE);
+    }
+
+    /**
+     * Read a binary board already in memory, refusing it before anything is
+     * allocated if its header declares more positions than maxPositions -
+     * a few bytes of runs can describe a board of any size.
+     *
+     * @param name         name used for the board in error messages
+     * @param contents     the whole board file, from index 0
+     * @param maxPositions largest number of rows times columns to accept
+     * @return board read from contents
+     * @throws BoardTooLargeException     if the board has more than maxPositions positions
+     * @throws InvalidFileFormatException for any other file formatting or content issue
+     */
+    public static CircuitBoard read(String name, ByteBuffer contents, long maxPositions) {
+        if (!isBinary(contents)) {
+            throw new InvalidFileFormatException(name + " has an unsupported binary format.");
+        }
+        ByteBuffer in = contents.duplicate().order(ByteOrder.BIG_ENDIAN);
+        in.position(MAGIC.length);
+        if (in.remaining() < HEADER_BYTES - MAGIC.length) {
+            throw new InvalidFileFormatException(" Invalid number of dimensions in file " + name);
+        }
+        int rows = in.getInt();
+        int cols = in.getInt();
+        if (rows < 0 || cols < 0 || ((long) rows * cols + 31) / 32 > Integer.MAX_VALUE - 8) {     //more longs than an array holds
+            throw new InvalidFileFormatException(" Invalid number of dimensions in file " + name);
+        }
+        long positions = (long) rows * cols;
+        if (positions > maxPositions) {
+            throw new BoardTooLargeException(name + " has more than " + maxPositions + " positions.");
+        }
+        int words = (int) ((positions + 31) / 32);
+        Point startingPoint = new Point(in.getInt(), in.getInt());
+        Point endingPoint = new Point(in.getInt(), in.getInt());
+        if (!inBounds(startingPoint, rows, cols) || !inBounds(endingPoint, rows, cols) || startingPoint.equals(endingPoint)) {
+            throw new InvalidFileFormatException(name + " has invalid starting or ending points.");
+        }
+
+        //packed contents are checked against the dimensions before the cells are allocated, runs as they are decoded
+        byte encoding = in.get();
+        long[] cells;
+        if (encoding == PACKED) {
+            if (in.remaining() < words * (long) Long.BYTES) {
+                throw new InvalidFileFormatException(name + " has too few rows.");
+            }
+            if (in.remaining() > words * (long) Long.BYTES) {
+                throw new InvalidFileFormatException(name + " has too many rows.");
+            }
+            cells = new long[words];
+            in.asLongBuffer().get(cells);
+            if ((positions & 31) != 0 && cells[cells.length - 1] >>> ((positions & 31) << 1) != 0) {
+                throw new InvalidFileFormatException(name + " has invalid characters.");    //bits past the last position must be 0
+            }
+        } else if (encoding == RUNS) {
+            cells = new long[words];
+            readRuns(name, in, cells, positions);
+        } else {
+            throw new InvalidFileFormatException(name + " has an unsupported binary format.");
+        }
+
+        //the only component codes must be '1' and '2' at the positions in the header
+        long components = 0;
+        for (long word : cells) {
+            components += Long.bitCount(word & (word >>> 1) & REPEAT);
+        }
+        if (components != 2 || code(cells, startingPoint, cols) != CircuitBoard.COMPONENT_CELL
+                || code(cells, endingPoint, cols) != CircuitBoard.COMPONENT_CELL) {
+            throw new InvalidFileFormatException(name + " has invalid starting or ending points.");
+        }
+        return new CircuitBoard(rows, cols, cells, startingPoint, endingPoint);
+    }
+
+    /**
+     * Decode run length encoded positions into cells in a single pass,
+     * rejecting a run that goes past the last position as soon as it is
+     * read, and runs that end before it.
+     *
+     * @param cells     cells to fill, all 0
+     * @param positions number of positions on the board
+     */
+    private static void readRuns(String name, ByteBuffer in, long[] cells, long positions) {
+        long position = 0;
+        try {
+            while (in.hasRemaining()) {
+                long run = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (shift > 56) {
+                        throw new InvalidFileFormatException(name + " has too many rows.");
+                    }
+                    b = in.get();
+                    run |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                long length = run >>> 2;
+                if (length == 0 || length > positions - position) {
+                    throw new InvalidFileFormatException(name + " has too many rows.");
+                }
+                fill(cells, position, length, (int) run & 3);
+                position += length;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new InvalidFileFormatException(name + " has too few rows.");
+        }
+        if (position < positions) {
+            throw new InvalidFileFormatException(name + " has too few rows.");
+        }
+    }
+
+    /**
+     * Set a run of positions that are still 0 to the same code, a whole long at a time where possible.
+     */
+    private static void fill(long[] cells, long from, long length, int code) {
+        if (code == 0) {
+            return;
+        }
+        long end = from + length;
+        while (from < end && (from & 31) != 0) {
+            cells[(int) (from >>> 5)] |= (long) code << ((from & 31) << 1);
+            from++;
+        }
+        while (end - from >= 32) {
+            cells[(int) (from >>> 5)] = code * REPEAT;
+            from += 32;
+        }
+        while (from < end) {
+            cells[(int) (from >>> 5)] |= (long) code << ((from & 31) << 1);
+            from++;
+        }
+    }
+
+    /**
+     * Write a board as a binary board file, with whichever encoding is smaller.
+     *
+     * @param board    board to write
+     * @param filename file to create or replace
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CircuitBoard board, String filename) throws IOException {
+        write(board, filename, false);
+    }
+
+    /**
+     * Write a board as a binary board file.
+     *
+     * @param board    board to write
+     * @param filename file to create or replace
+     * @param packed   true to always pack the positions, false to run length encode them when that is smaller
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CircuitBoard board, String filename, boolean packed) throws IOException {
+        long[] cells = board.cells();
+        long positions = (long) board.numRows() * board.numCols();
+        boolean runs = !packed && runBytes(cells, positions) < cells.length * (long) Long.BYTES;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+            out.write(MAGIC);
+            out.writeInt(board.numRows());
+            out.writeInt(board.numCols());
+            Point start = board.getStartingPoint();
+            Point end = board.getEndingPoint();
+            out.writeInt(start.x);
+            out.writeInt(start.y);
+            out.writeInt(end.x);
+            out.writeInt(end.y);
+            if (runs) {
+                out.writeByte(RUNS);
+                writeRuns(cells, positions, out);
+            } else {
+                out.writeByte(PACKED);
+                for (long word : cells) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes the positions take when run length encoded
+     */
+    private static long runBytes(long[] cells, long positions) {
+        long bytes = 0;
+        long position = 0;
+        while (position < positions) {
+            long length = runLength(cells, position, positions);
+            bytes += varintBytes(length << 2);
+            position += length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Write the positions as runs, in the format read by readRuns().
+     */
+    private static void writeRuns(long[] cells, long positions, DataOutputStream out) throws IOException {
+        long position = 0;
+        while (position < positions) {
+            long length = runLength(cells, position, positions);
+            long run = (length << 2) | code(cells, position);
+            while ((run & ~0x7FL) != 0) {
+                out.writeByte((int) (run & 0x7F) | 0x80);
+                run >>>= 7;
+            }
+            out.writeByte((int) run);
+            position += length;
+        }
+    }
+
+    /**
+     * @return number of positions from position on with the same code, skipping whole longs where possible
+     */
+    private static long runLength(long[] cells, long position, long positions) {
+        int code = code(cells, position);
+        long end = position + 1;
+        while (end < positions && (end & 31) != 0 && code(cells, end) == code) {
+            end++;
+        }
+        while (positions - end >= 32 && (end & 31) == 0 && cells[(int) (end >>> 5)] == code * REPEAT) {
+            end += 32;
+        }
+        while (end < positions && code(cells, end) == code) {
+            end++;
+        }
+        return end - position;
+    }
+
+    /**
+     * @return number of bytes in the variable-length encoding of value
+     */
+    private static int varintBytes(long value) {
+        int bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    /**
+     * Write a board as a text board file, in the format of the boards folder.
+     *
+     * @param board    board to write
+     * @param filename file to create or replace
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeText(CircuitBoard board, String filename) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(filename), 1 << 16)) {
+            out.write(board.numRows() + " " + board.numCols());
+            out.newLine();
+            char[] line = new char[board.numCols() * 2];
+            for (int row = 0; row < board.numRows(); row++) {
+                for (int col = 0; col < board.numCols(); col++) {
+                    line[col * 2] = board.charAt(row, col);
+                    line[col * 2 + 1] = ' ';
+                }
+                out.write(line);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return 2-bit code of a position in packed cells
+     */
+    private static int code(long[] cells, long position) {
+        return (int) (cells[(int) (position >>> 5)] >>> ((position & 31) << 1)) & 3;
+    }
+
+    /**
+     * @return 2-bit code of an in-bounds point in packed cells
+     */
+    private static int code(long[] cells, Point point, int cols) {
+        return code(cells, (long) point.x * cols + point.y);
+    }
+
+    /**
+     * @return true if point is a position on a board of the given size
+     */
+    private static boolean inBounds(Point point, int rows, int cols) {
+        return point.x >= 0 && point.x < rows && point.y >= 0 && point.y < cols;
+    }
+
+} // class BinaryBoard
@@ -0,0 +1,412 @@
+import java.awt.*;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fast alternative to the CircuitBoard(String) constructor for large board
+ * files. The file is memory-mapped through a FileChannel and its bytes are
+ * parsed straight into the packed board in a single pass, without Scanner,
+ * regular expressions or a String per position. The file format, validation
+ * rules and InvalidFileFormatException messages are the same as the
+ * CircuitBoard(String) constructor's.
+ *
+ * Binary board files, as written by BinaryBoard, are recognized by their
+ * first bytes and read by BinaryBoard instead, so either format can be given
+ * wherever a board file is expected.
+ *
+ * The splitting of a file into lines and tokens is done by Tokenizer, which
+ * other text formats such as MultiNetRouter's can extend.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class BoardLoader {
+    /**
+     * largest part of the file mapped at once
+     */
+    private static final long WINDOW = 1L << 30;
+
+    /**
+     * Load a CircuitBoard from a board file.
+     *
+     * @param filename file containing a grid of characters
+     * @return board read from filename
+     * @throws FileNotFoundException      if the file cannot be opened
+     * @throws InvalidFileFormatException for any file formatting or content issue
+     */
+    public static CircuitBoard load(String filename) throws FileNotFoundException {
+        TracerEvents.BoardLoadEvent event = new TracerEvents.BoardLoadEvent();
+        event.begin();
+        try (FileInputStream in = new FileInputStream(filename); FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            ByteBuffer first = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW, size));
+            CircuitBoard board;
+            if (BinaryBoard.isBinary(first)) {
+                board = (size <= WINDOW) ? BinaryBoard.read(filename, first) : BinaryBoard.read(filename);
+            } else {
+                Parser parser = new Parser(filename, Long.MAX_VALUE);
+                tokenize(channel, size, first, parser);
+                board = parser.finish();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = filename;
+                event.rows = board.numRows();
+                event.cols = board.numCols();
+                event.bytes = size;
+                event.commit();
+            }
+            return board;
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parse a board already in memory, such as one sent over the network.
+     * A text board's dimensions are checked against the length of contents
+     * before the board is allocated, so a few bytes cannot claim a huge
+     * board; binary boards are checked the same way by BinaryBoard.
+     *
+     * @param name     name used for the board in error messages
+     * @param contents bytes of a text or binary board file
+     * @return board read from contents
+     * @throws InvalidFileFormatException for any file formatting or content issue
+     */
+    public static CircuitBoard parse(String name, byte[] contents) {
+        return parse(name, contents, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parse a board already in memory, refusing it before it is allocated if
+     * its dimensions give more than maxPositions positions. A run length
+     * encoded binary board can describe any number of positions in a few
+     * bytes, so the length of contents alone does not bound its size.
+     *
+     * @param name         name used for the board in error messages
+     * @param contents     bytes of a text or binary board file
+     * @param maxPositions largest number of rows times columns to accept
+     * @return board read from contents
+     * @throws BoardTooLargeException     if the board has more than maxPositions positions
+     * @throws InvalidFileFormatException for any other file formatting or content issue
+     */
+    public static CircuitBoard parse(String name, byte[] contents, long maxPositions) {
+        TracerEvents.BoardLoadEvent event = new TracerEvents.BoardLoadEvent();
+        event.begin();
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        CircuitBoard board;
+        if (BinaryBoard.isBinary(buffer)) {
+            board = BinaryBoard.read(name, buffer, maxPositions);
+        } else {
+            Parser parser = new Parser(name, maxPositions);
+            tokenize(buffer, parser);
+            board = parser.finish();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = name;
+            event.rows = board.numRows();
+            event.cols = board.numCols();
+            event.bytes = contents.length;
+            event.commit();
+        }
+        return board;
+    }
+
+    /**
+     * Feed a whole text file to a tokenizer, one mapped window at a time.
+     *
+     * @param filename  text file
+     * @param tokenizer tokenizer to feed every byte of the file to
+     * @throws FileNotFoundException      if the file cannot be opened
+     * @throws InvalidFileFormatException for any file formatting or content issue the tokenizer finds
+     */
+    static void tokenize(String filename, Tokenizer tokenizer) throws FileNotFoundException {
+        try (FileInputStream in = new FileInputStream(filename); FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            tokenize(channel, size, channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW, size)), tokenizer);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Feed a file to a tokenizer, starting with its first window, already mapped.
+     */
+    private static void tokenize(FileChannel channel, long size, ByteBuffer first, Tokenizer tokenizer) throws IOException {
+        tokenizer.size = size;
+        tokenizer.parse(first);
+        for (long position = WINDOW; position < size; position += WINDOW) {
+            tokenizer.parse(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position)));
+        }
+        tokenizer.endInput();
+    }
+
+    /**
+     * Feed a file already in memory to a tokenizer.
+     */
+    private static void tokenize(ByteBuffer contents, Tokenizer tokenizer) {
+        tokenizer.size = contents.remaining();
+        tokenizer.parse(contents);
+        tokenizer.endInput();
+    }
+
+    /**
+     * Byte-at-a-time splitter of a text file into lines and whitespace
+     * separated tokens, which keeps its place between mapped windows of the
+     * file. A '\n', a '\r' or a "\r\n" ends a line. Subclasses build a board
+     * from the tokens through the hooks, without a String per token.
+     */
+    abstract static class Tokenizer {
+        final String filename;
+        /**
+         * number of bytes in the file, which is at least the number of positions of any board it holds
+         */
+        long size;
+        /**
+         * line of the file being parsed, 0 is the dimensions line
+         */
+        int line = 0;
+        /**
+         * number of tokens seen so far on this line, counting the current one
+         */
+        int tokens = 0;
+        private boolean inToken = false;
+        /**
+         * true once anything other than a line terminator is seen on this line
+         */
+        private boolean lineStarted = false;
+        /**
+         * true right after a '\r', so a following '\n' ends the same line
+         */
+        private boolean afterReturn = false;
+
+        /**
+         * @param filename name of the file in error messages
+         */
+        Tokenizer(String filename) {
+            this.filename = filename;
+        }
+
+        /**
+         * Parse every byte remaining in buffer.
+         *
+         * @param buffer next window of the file
+         */
+        final void parse(ByteBuffer buffer) {
+            int limit = buffer.limit();
+            for (int i = buffer.position(); i < limit; i++) {
+                byte b = buffer.get(i);
+                if (afterReturn) {
+                    afterReturn = false;
+                    if (b == '\n') {
+                        continue;
+                    }
+                }
+                if (b == '\n' || b == '\r') {
+                    finishLine();
+                    afterReturn = (b == '\r');
+                } else if (b <= ' ' && b >= 0) {   //whitespace separates tokens
+                    lineStarted = true;
+                    if (inToken) {
+                        inToken = false;
+                        endToken();
+                    }
+                } else {
+                    lineStarted = true;
+                    if (!inToken) {
+                        inToken = true;
+                        tokens++;
+                        startToken(b);
+                    } else {
+                        continueToken(b);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Finish the last line, which may not end with a line terminator -
+         * even an empty file has a dimensions line.
+         */
+        final void endInput() {
+            if (lineStarted || line == 0) {
+                finishLine();
+            }
+        }
+
+        private void finishLine() {
+            if (inToken) {
+                inToken = false;
+                endToken();
+            }
+            endLine();
+            line++;
+            tokens = 0;
+            lineStarted = false;
+        }
+
+        /**
+         * Handle the first byte of a token, which tokens already counts.
+         */
+        abstract void startToken(byte b);
+
+        /**
+         * Handle a later byte of the current token.
+         */
+        abstract void continueToken(byte b);
+
+        /**
+         * Handle the end of the current token.
+         */
+        void endToken() {
+        }
+
+        /**
+         * Check the line just finished, before line and tokens move on to the next one.
+         */
+        abstract void endLine();
+    }
+
+    /**
+     * Tokenizer that builds a CircuitBoard.
+     */
+    private static class Parser extends Tokenizer {
+        /**
+         * largest number of positions accepted
+         */
+        private final long maxPositions;
+        private CircuitBoard board;
+        /**
+         * first character of each token on the current line, checked when the line ends
+         */
+        private char[] rowChars;
+        private Point startingPoint;
+        private Point endingPoint;
+        private int rows;
+        private int cols;
+
+        /**
+         * row of the board being parsed
+         */
+        private int row = 0;
+        /**
+         * the two tokens of the dimensions line
+         */
+        private final StringBuilder[] dimensions = {new StringBuilder(), new StringBuilder()};
+
+        Parser(String filename, long maxPositions) {
+            super(filename);
+            this.maxPositions = maxPositions;
+        }
+
+        /**
+         * Handle the first byte of a token - only the first character of each
+         * position on the board matters, as with the CircuitBoard constructor.
+         */
+        @Override
+        void startToken(byte b) {
+            if (line == 0) {
+                if (tokens <= 2) {
+                    dimensions[tokens - 1].append((char) b);
+                }
+            } else if (tokens <= cols) {
+                rowChars[tokens - 1] = (char) (b & 0xFF);
+            }
+        }
+
+        @Override
+        void continueToken(byte b) {
+            if (line == 0 && tokens <= 2) {
+                dimensions[tokens - 1].append((char) b);
+            }
+        }
+
+        /**
+         * Check the line just finished, in the same order as the CircuitBoard constructor.
+         */
+        @Override
+        void endLine() {
+            if (line == 0) {
+                if (tokens != 2) {
+                    throw new InvalidFileFormatException(" Invalid number of dimensions in file " + filename);  //ensure no extra characters in the row with dimensions.
+                }
+                try {
+                    rows = Integer.parseInt(dimensions[0].toString());
+                    cols = Integer.parseInt(dimensions[1].toString());
+                } catch (NumberFormatException e) {
+                    throw new InvalidFileFormatException(" Invalid number of dimensions in file " + filename);
+                }
+                if ((long) rows * cols > size) {    //every position takes a byte, so the board cannot all be there
+                    throw new InvalidFileFormatException(filename + " has too few rows.");
+                }
+                if ((long) rows * cols > maxPositions) {
+                    throw new BoardTooLargeException(filename + " has more than " + maxPositions + " positions.");
+                }
+                board = new CircuitBoard(rows, cols);
+                rowChars = new char[cols];
+            } else {
+                if (row >= rows) {      //check to make sure there aren't extra rows in the file
+                    throw new InvalidFileFormatException(filename + " has too many rows.");
+                }
+                if (tokens != cols) {   //check to make sure each row has the appropriate number of columns
+                    throw new InvalidFileFormatException(" Invalid number of columns in file " + filename);
+                }
+                for (int col = 0; col < cols; col++) {
+                    checkPosition(rowChars[col], col);
+                    board.place(row, col, rowChars[col]);
+                }
+                row++;
+            }
+        }
+
+        /**
+         * Validate one position of the current row and remember the components.
+         */
+        private void checkPosition(char currChar, int col) {
+            switch (currChar) {
+                case 'O':
+                case 'X':
+                case 'T':
+                    break;
+                case '1':   //check for a starting point while making sure there aren't multiple.
+                    if (startingPoint != null) {
+                        throw new InvalidFileFormatException(filename + " has multiple starting points.");
+                    }
+                    startingPoint = new Point(row, col);
+                    break;
+                case '2':   //check for ending point and making sure there aren't multiple.
+                    if (endingPoint != null) {
+                        throw new InvalidFileFormatException(filename + " has multiple ending points.");
+                    }
+                    endingPoint = new Point(row, col);
+                    break;
+                default:    //check to ensure no invalid characters in the file.
+                    throw new InvalidFileFormatException(filename + " has invalid characters.");
+            }
+        }
+
+        /**
+         * Check the board as a whole, once the tokenizer has seen the end of the file.
+         *
+         * @return the parsed board
+         */
+        CircuitBoard finish() {
+            if (row < rows) {       //if we have empty rows, there are too few rows in the file.
+                throw new InvalidFileFormatException(filename + " has too few rows.");
+            }
+            if (startingPoint == null || endingPoint == null) { //have to make sure we have a starting and ending point.
+                throw new InvalidFileFormatException(filename + " has invalid starting or ending points.");
+            }
+            return board;
+        }
+    }
+
+} // class BoardLoader
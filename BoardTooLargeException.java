@@ -0,0 +1,11 @@
+/**
+ * Indicates a board file that is valid so far but declares more positions than
+ * the caller accepts, found before the board is allocated.
+ * @author harrisonjansenvanbeek
+ */
+@SuppressWarnings("serial")
+public class BoardTooLargeException extends InvalidFileFormatException {
+	public BoardTooLargeException(String msg) {
+		super(msg);
+	}
+}
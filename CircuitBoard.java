@@ -1,6 +1,11 @@
 import java.awt.*;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.Scanner;
 
 /**
@@ -11,9 +16,10 @@ import java.util.Scanner;
  */
 public class CircuitBoard {
     /**
-     * current contents of the board
+     * current contents of the board, packed 2 bits per position and 32
+     * positions per long in row-major order - see the cell codes below
      */
-    private char[][] board;
+    private long[] board;
     /**
      * location of row,col for '1'
      */
@@ -33,6 +39,12 @@ public class CircuitBoard {
     private final char END = '2';    //the ending component
     private final String ALLOWED_CHARS = "OXT12"; //useful for validating with indexOf
 
+    //2-bit cell codes - '1' and '2' share a code since their locations are kept in startingPoint and endingPoint
+    static final int OPEN_CELL = 0;
+    static final int CLOSED_CELL = 1;
+    static final int TRACE_CELL = 2;
+    static final int COMPONENT_CELL = 3;
+
     /**
      * Construct a CircuitBoard from a given board input file, where the first
      * line contains the number of rows and columns as ints and each subsequent
@@ -45,11 +57,22 @@ public class CircuitBoard {
      * 'T' is not expected in input files - represents part of the trace
      * connecting components 1 and 2 in the solution
      *
+     * Binary board files written by BinaryBoard are recognized and read too.
+     *
      * @param filename file containing a grid of characters
      * @throws FileNotFoundException      if Scanner cannot open or read the file
      * @throws InvalidFileFormatException for any file formatting or content issue
      */
     public CircuitBoard(String filename) throws FileNotFoundException {
+        if (BinaryBoard.isBinary(filename)) {
+            CircuitBoard binary = BinaryBoard.read(filename);
+            board = binary.board;
+            startingPoint = binary.startingPoint;
+            endingPoint = binary.endingPoint;
+            ROWS = binary.ROWS;
+            COLS = binary.COLS;
+            return;
+        }
         Scanner fileScan = new Scanner(new File(filename));
         String rowsLine = fileScan.nextLine().trim();
         String[] dimensions = rowsLine.split("\\s+");
@@ -65,7 +88,7 @@ public class CircuitBoard {
         }
 
 
-        board = new char[ROWS][COLS];
+        board = newBoard(ROWS, COLS);
         int row = 0;
         while (fileScan.hasNextLine()) {
             String line = fileScan.nextLine().trim();
@@ -93,7 +116,7 @@ public class CircuitBoard {
                     }
                     endingPoint = new Point(row, col);
                 }
-                board[row][col] = currChar;
+                place(row, col, currChar);
 
             }
             row++;
@@ -115,7 +138,7 @@ public class CircuitBoard {
      * @param original board to copy
      */
     public CircuitBoard(CircuitBoard original) {
-        board = original.getBoard();
+        board = Arrays.copyOf(original.board, original.board.length);
         startingPoint = new Point(original.startingPoint);
         endingPoint = new Point(original.endingPoint);
         ROWS = original.numRows();
@@ -123,18 +146,100 @@ public class CircuitBoard {
     }
 
     /**
-     * Utility method for copy constructor
+     * Construct an all open CircuitBoard for BoardLoader to fill in with
+     * place() - the loader is responsible for validating the contents.
      *
-     * @return copy of board array
+     * @param rows number of rows
+     * @param cols number of columns
      */
-    private char[][] getBoard() {
-        char[][] copy = new char[board.length][board[0].length];
-        for (int row = 0; row < board.length; row++) {
-            for (int col = 0; col < board[row].length; col++) {
-                copy[row][col] = board[row][col];
-            }
+    CircuitBoard(int rows, int cols) {
+        board = newBoard(rows, cols);
+        ROWS = rows;
+        COLS = cols;
+    }
+
+    /**
+     * Construct a CircuitBoard around packed contents read by BinaryBoard -
+     * the reader is responsible for validating them.
+     *
+     * @param rows          number of rows
+     * @param cols          number of columns
+     * @param cells         positions packed as in the board field, kept rather than copied
+     * @param startingPoint location of '1'
+     * @param endingPoint   location of '2'
+     */
+    CircuitBoard(int rows, int cols, long[] cells, Point startingPoint, Point endingPoint) {
+        board = cells;
+        this.startingPoint = startingPoint;
+        this.endingPoint = endingPoint;
+        ROWS = rows;
+        COLS = cols;
+    }
+
+    /**
+     * Utility method for constructors
+     *
+     * @return packed board array with every position open
+     */
+    private static long[] newBoard(int rows, int cols) {
+        if (rows < 0 || cols < 0) {
+            throw new NegativeArraySizeException(rows + " x " + cols);
+        }
+        return new long[(int) (((long) rows * cols + 31) / 32)];
+    }
+
+    /**
+     * Set the contents of a position while the board is being read.
+     *
+     * @param row row coordinate
+     * @param col col coordinate
+     * @param c   one of the allowed characters
+     */
+    final void place(int row, int col, char c) {
+        switch (c) {
+            case OPEN:
+                setCell(row, col, OPEN_CELL);
+                break;
+            case CLOSED:
+                setCell(row, col, CLOSED_CELL);
+                break;
+            case TRACE:
+                setCell(row, col, TRACE_CELL);
+                break;
+            case START:
+                setCell(row, col, COMPONENT_CELL);
+                startingPoint = new Point(row, col);
+                break;
+            case END:
+                setCell(row, col, COMPONENT_CELL);
+                endingPoint = new Point(row, col);
+                break;
         }
-        return copy;
+    }
+
+    /**
+     * @return the packed contents of this board, not a copy, for BinaryBoard to write out
+     */
+    long[] cells() {
+        return board;
+    }
+
+    /**
+     * @return 2-bit code of an in-bounds position
+     */
+    private int cell(int row, int col) {
+        long index = (long) row * COLS + col;
+        return (int) (board[(int) (index >>> 5)] >>> ((index & 31) << 1)) & 3;
+    }
+
+    /**
+     * Replace the 2-bit code of an in-bounds position.
+     */
+    private void setCell(int row, int col, int code) {
+        long index = (long) row * COLS + col;
+        int shift = (int) (index & 31) << 1;
+        int word = (int) (index >>> 5);
+        board[word] = (board[word] & ~(3L << shift)) | ((long) code << shift);
     }
 
     /**
@@ -145,7 +250,19 @@ public class CircuitBoard {
      * @return char at row, col
      */
     public char charAt(int row, int col) {
-        return board[row][col];
+        if (row < 0 || row >= ROWS || col < 0 || col >= COLS) {
+            throw new ArrayIndexOutOfBoundsException("row " + row + ", col " + col);
+        }
+        switch (cell(row, col)) {
+            case OPEN_CELL:
+                return OPEN;
+            case CLOSED_CELL:
+                return CLOSED;
+            case TRACE_CELL:
+                return TRACE;
+            default:
+                return (row == startingPoint.x && col == startingPoint.y) ? START : END;
+        }
     }
 
     /**
@@ -156,10 +273,10 @@ public class CircuitBoard {
      * @return true if position at (row, col) is open
      */
     public boolean isOpen(int row, int col) {
-        if (row < 0 || row >= board.length || col < 0 || col >= board[row].length) {
+        if (row < 0 || row >= ROWS || col < 0 || col >= COLS) {
             return false;
         }
-        return board[row][col] == OPEN;
+        return cell(row, col) == OPEN_CELL;
     }
 
     /**
@@ -171,12 +288,28 @@ public class CircuitBoard {
      */
     public void makeTrace(int row, int col) {
         if (isOpen(row, col)) {
-            board[row][col] = TRACE;
+            setCell(row, col, TRACE_CELL);
         } else {
-            throw new OccupiedPositionException("row " + row + ", col " + col + "contains '" + board[row][col] + "'");
+            throw new OccupiedPositionException("row " + row + ", col " + col + "contains '" + charAt(row, col) + "'");
         }
     }
 
+    /**
+     * Open or block a position, for editing a board after it has been read.
+     *
+     * @param row  row coordinate
+     * @param col  col coordinate
+     * @param open true to make the position 'O', false to make it 'X'
+     * @throws OccupiedPositionException if the position holds a component or a trace
+     */
+    public void setOpen(int row, int col, boolean open) {
+        char current = charAt(row, col);    //also checks the bounds
+        if (current != OPEN && current != CLOSED) {
+            throw new OccupiedPositionException("row " + row + ", col " + col + "contains '" + current + "'");
+        }
+        setCell(row, col, open ? OPEN_CELL : CLOSED_CELL);
+    }
+
     /**
      * @return starting Point(row,col)
      */
@@ -205,14 +338,33 @@ public class CircuitBoard {
         return COLS;
     }
 
+    /**
+     * Hash of everything that makes up this board: its size, the locations
+     * of '1' and '2' and the contents of every position. Boards with the same
+     * contents have the same hash, however they were read or copied.
+     *
+     * @return SHA-256 of the board contents as 64 hex digits
+     */
+    public String contentHash() {
+        ByteBuffer contents = ByteBuffer.allocate(6 * Integer.BYTES + board.length * Long.BYTES);
+        contents.putInt(ROWS).putInt(COLS);
+        contents.putInt(startingPoint.x).putInt(startingPoint.y).putInt(endingPoint.x).putInt(endingPoint.y);
+        contents.asLongBuffer().put(board);     //positions past the end of the board are always 0
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contents.array()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     //every Java platform supports SHA-256
+        }
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Object#toString()
      */
     public String toString() {
         StringBuilder str = new StringBuilder();
-        for (int row = 0; row < board.length; row++) {
-            for (int col = 0; col < board[row].length; col++) {
-                str.append(board[row][col] + " ");
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                str.append(charAt(row, col)).append(' ');
             }
             str.append("\n");
         }
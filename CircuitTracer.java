@@ -1,5 +1,9 @@
 import java.awt.*;
+import java.math.BigInteger;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
 
 /**
  * Search for shortest paths between start and end points on a circuit board
@@ -11,14 +15,75 @@ import java.util.ArrayList;
  * @author harrisonjansenvanbeek
  */
 public class CircuitTracer {
+    /**
+     * shortest solutions found so far that have not been written out yet
+     */
+    private final ArrayList<TraceState> bestPaths = new ArrayList<TraceState>();
+    /**
+     * length of the shortest solution found so far
+     */
+    private int bestLength = Integer.MAX_VALUE;
+    /**
+     * writes each solution as soon as it is found, or null to keep solutions in
+     * bestPaths until the search ends - only set for searches that find
+     * solutions in order of length, so a solution is known to be shortest
+     * when it is found
+     */
+    private SolutionWriter output;
+    /**
+     * fewest steps any stored TraceState has taken to reach each position,
+     * indexed by row * numCols + col, or null when not pruning - see store()
+     */
+    private int[] bestDepth;
+    private int depthCols;
+    /**
+     * false to search without the bestDepth table, for comparing the two
+     */
+    private boolean pruneDominated = true;
+    /**
+     * number of TraceStates to a segment spilled by -f, or 0 to fit the segments to the heap
+     */
+    private int spillSegmentSize = 0;
+    /**
+     * counters and timings of this solve, printed with --stats, or null without it
+     */
+    private TracerStats stats;
+    /**
+     * counts of this search, kept in plain fields so the search loops never
+     * write the volatile counters of stats - see publishStats()
+     */
+    private long statesGenerated = 0;
+    private long statesExpanded = 0;
+    private long statesPruned = 0;
+    private long peakStorageSize = 0;
+    private long solutionsFound = 0;
+    /**
+     * true for a -q search, whose states come out one path length at a time - see frontier()
+     */
+    private boolean breadthFirst = false;
+    /**
+     * path length of the last state frontier() saw
+     */
+    private int frontierLength = 0;
+    /**
+     * with --stats, the counts are published to stats after every this many expanded states
+     */
+    private static final long PUBLISH_INTERVAL = 1 << 16;
 
     /**
      * Launch the program.
      *
      * @param args three required arguments:
-     *             first arg: -s for stack or -q for queue
+     *             first arg: -s for stack, -q for queue, -a for best-first (A*), -i for iterative deepening,
+     *             -d for distance fields, -m for a bidirectional search,
+     *             -j for one shortest trace found with jump point search,
+     *             -n to count shortest traces or -p followed by a thread count for a parallel search
      *             second arg: -c for console output or -g for GUI output
      *             third arg: input file name
+     *             optional args before the file name: -b for bounded search,
+     *             -f to spill -s and -q search states to temporary files,
+     *             -r followed by a directory to cache results in,
+     *             --stats to print search statistics and publish them over JMX
      */
     public static void main(String[] args) {
         new CircuitTracer(args); //create this with args
@@ -29,9 +94,19 @@ public class CircuitTracer {
      */
     private void printUsage() {
         System.out.println("To USE: this program takes three arguments: the storage method, console or GUI output, and the file name.");
-        System.out.println("first arg: -s for stack or -q for queue.");
+        System.out.println("first arg: -s for stack or -q for queue, -a for a best-first (A*) priority queue,");
+        System.out.println("           -i for an iterative-deepening search that repeats a depth-first search with longer and longer limits,");
+        System.out.println("           or -d to trace only shortest paths using distance fields.");
+        System.out.println("           -m searches from both the 1 and the 2 until the searches meet in the middle.");
+        System.out.println("           -j finds just one shortest path with a jump point search, which skips across open areas.");
+        System.out.println("           -n only counts the shortest paths and reports their length, without listing them.");
+        System.out.println("           -p <threads> instead searches in parallel on the given number of threads.");
         System.out.println("second arg: -c for console or -g for GUI output.");
         System.out.println("third arg: the full filename. \n ***** IF USING THE FILES IN THE BOARDS FOLDER, INCLUDE THE PATH IN THE FILENAME." );
+        System.out.println("optional: -b before the filename for a bounded search that skips traces longer than the best found so far.");
+        System.out.println("          -f before the filename keeps only part of a -s or -q search in memory and spills the rest to temporary files.");
+        System.out.println("          -r <directory> before the filename reuses the results of boards already solved and saves new ones there.");
+        System.out.println("          --stats before the filename prints search statistics when done and shows them live over JMX.");
         System.out.println("EXAMPLE: java CircuitTracer -q -c ./boards/valid2.dat");
     }
 
@@ -42,86 +117,554 @@ public class CircuitTracer {
      * @param args command line arguments passed through from main()
      */
     public CircuitTracer(String[] args) {
-        if (args.length != 3) {
+        if (args.length < 3) {
             printUsage();
             return; //exit the constructor immediately
         }
-        Storage<TraceState> stateStore;
-        ArrayList<TraceState> bestPaths = new ArrayList<TraceState>();  //initialize storage of new TraceState and bestPaths
-
-        switch (args[0]) {  //check for storage implementation
-            case "-q":
-                stateStore = new Storage<TraceState>(Storage.DataStructure.queue);
-                break;
-            case "-s":
-                stateStore = new Storage<TraceState>(Storage.DataStructure.stack);
-                break;
-            default:
-                printUsage();
-                return;
+        String searchMode = null;
+        String outputMode = null;
+        boolean bounded = false;
+        boolean spill = false;
+        String cacheDirectory = null;
+        boolean printStats = false;
+        int threads = 0;
+        BigInteger solutionCount = null;    //set instead of bestPaths when only counting
+        int shortestLength = 0;
 
+        for (int i = 0; i < args.length - 1; i++) {  //check options before the filename
+            switch (args[i]) {
+                case "-q":
+                case "-s":
+                case "-a":
+                case "-i":
+                case "-d":
+                case "-m":
+                case "-j":
+                case "-n":
+                    if (searchMode != null) {   //only one search method allowed
+                        printUsage();
+                        return;
+                    }
+                    searchMode = args[i];
+                    break;
+                case "-p":
+                    if (searchMode != null || i + 2 >= args.length) {
+                        printUsage();
+                        return;
+                    }
+                    searchMode = args[i];
+                    try {
+                        threads = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        threads = 0;
+                    }
+                    if (threads < 1) {  //need at least one worker thread
+                        printUsage();
+                        return;
+                    }
+                    break;
+                case "-c":
+                case "-g":
+                    if (outputMode != null) {   //only one output method allowed
+                        printUsage();
+                        return;
+                    }
+                    outputMode = args[i];
+                    break;
+                case "-b":
+                    bounded = true;
+                    break;
+                case "-f":
+                    spill = true;
+                    break;
+                case "-r":
+                    if (cacheDirectory != null || i + 2 >= args.length) {
+                        printUsage();
+                        return;
+                    }
+                    cacheDirectory = args[++i];
+                    break;
+                case "--stats":
+                    printStats = true;
+                    break;
+                default:
+                    printUsage();
+                    return;
+            }
+        }
+        if (searchMode == null || outputMode == null || args[args.length - 1].startsWith("-")) {
+            printUsage();
+            return;
+        }
+        if (printStats) {
+            stats = new TracerStats(args[args.length - 1]);
+            try {
+                stats.register();
+            } catch (Exception e) {
+                System.err.println(errorMessage(e));
+            }
         }
+        SolutionWriter writer = null;
         try {
-            CircuitBoard board = new CircuitBoard(args[2]);
-            Point startingPoint = board.getStartingPoint();
-            for (int i = -1; i <= 1; i++) { //create initial TraceStates
-                if (board.isOpen(startingPoint.x + i, startingPoint.y)) {
-                    TraceState newState = new TraceState(board, startingPoint.x + i, startingPoint.y);
-                    stateStore.store(newState);
-                }
-                if (board.isOpen(startingPoint.x, startingPoint.y + i)) {
-                    TraceState newState2 = new TraceState(board, startingPoint.x, startingPoint.y + i);
-                    stateStore.store(newState2);
+            CircuitBoard board = BoardLoader.load(args[args.length - 1]);
+            beginPhase(TracerStats.SEARCHING);
+            if (outputMode.equals("-c")) {
+                writer = new SolutionWriter(System.out, board);
+                //stack searches can still find a shorter solution later, and the cache needs every solution kept
+                if (!searchMode.equals("-s") && !searchMode.equals("-p") && cacheDirectory == null) {
+                    output = writer;
                 }
             }
-            while (!stateStore.isEmpty()) {
-                TraceState currentEvaluated = stateStore.retrieve();
-
-                if (currentEvaluated.isSolution()) {        //check for solution and add to bestpaths
-                    if (bestPaths.isEmpty() || currentEvaluated.pathLength() == bestPaths.getFirst().pathLength()) {
-                        bestPaths.add(currentEvaluated);
-                    } else if (currentEvaluated.pathLength() < bestPaths.getFirst().pathLength()) {
-                        bestPaths.clear();
-                        bestPaths.add(currentEvaluated);
-                    }
+            if (searchMode.equals("-n")) {
+                DistanceFieldTracer tracer = new DistanceFieldTracer(board);
+                shortestLength = tracer.shortestPathLength();
+                solutionCount = tracer.countShortestPaths();
+            } else if (cacheDirectory != null && !searchMode.equals("-j")) {  //the cache holds every shortest trace
+                ResultCache cache = new ResultCache(Paths.get(cacheDirectory));
+                ArrayList<TraceState> cached = cache.get(board);
+                if (cached != null) {
+                    bestPaths.addAll(cached);
                 } else {
-
-                    for (int i = -1; i < 2; i++) {  //else generate all new TraceStates needed
-                        if (i == 0) continue;
-                        int newX = currentEvaluated.getRow() + i;
-                        int newY = currentEvaluated.getCol() + i;
-                        if (currentEvaluated.isOpen(newX, currentEvaluated.getCol())) {
-                                TraceState newState = new TraceState(currentEvaluated, newX, currentEvaluated.getCol());
-                                stateStore.store(newState);
-                        }
-                        if (currentEvaluated.isOpen(currentEvaluated.getRow(), newY)) {
-                            TraceState newState2 = new TraceState(currentEvaluated, currentEvaluated.getRow(), newY);
-                            stateStore.store(newState2);
-                        }
-                    }
-
+                    trace(board, searchMode, bounded, spill, threads);
+                    cache.put(board, bestPaths);
                 }
+            } else {
+                trace(board, searchMode, bounded, spill, threads);
             }
         } catch (Exception e) {
-            System.err.println(" An error Occurred! Try again. " +  e + e.getMessage());
+            System.err.println(errorMessage(e));
 
         }
-        switch (args[1]) {  //check for output method (need to implement GUI)
+        publishStats();
+        beginPhase(TracerStats.WRITING);
+        TracerEvents.SolutionOutputEvent outputEvent = new TracerEvents.SolutionOutputEvent();
+        outputEvent.begin();
+        switch (outputMode) {  //check for output method (need to implement GUI)
             case "-c":
+                if (solutionCount != null) {
+                    System.out.println("There are " + solutionCount + " solutions.");
+                    if (shortestLength > 0) {
+                        System.out.println("Shortest Path: " + shortestLength);
+                    }
+                }
 //                System.out.println("There are " + bestPaths.size() + " solutions.");
 //                System.out.println("Shortest Path: " + bestPaths.getFirst().pathLength());
-                for (TraceState states : bestPaths) {
-                    System.out.println(states.toString());
+                if (writer != null) {
+                    for (TraceState states : bestPaths) {
+                        writer.write(states);
+                    }
+                    writer.flush();
                 }
+                outputEvent.board = args[args.length - 1];
+                outputEvent.solutions = (writer == null) ? 0 : writer.getSolutionsWritten();
+                outputEvent.commit();
 
 
                 break;
             case "-g":
                 throw new UnsupportedOperationException("GUI mode not yet supported.");
-            default:
-                printUsage();
         }
+        beginPhase(TracerStats.DONE);
+        if (stats != null) {
+            stats.unregister();
+            System.err.println(stats);
+        }
+    }
+
+    /**
+     * Private constructor for solve(), which takes its options directly
+     * instead of from the command line.
+     */
+    private CircuitTracer() {
+    }
+
+    /**
+     * Find every shortest trace on a board the same way the command line
+     * does, for callers that solve many boards in one JVM.
+     *
+     * @param board      board to trace
+     * @param searchMode any search option except -n, such as "-q" or "-d"
+     * @param bounded    true for a bounded search, as with -b
+     * @param spill      true to spill search states to temporary files, as with -f
+     * @param threads    number of worker threads for -p
+     * @return all shortest traces, empty if there are none
+     * @throws CancellationException if the calling thread is interrupted during the search
+     */
+    public static ArrayList<TraceState> solve(CircuitBoard board, String searchMode, boolean bounded, boolean spill, int threads) {
+        CircuitTracer tracer = new CircuitTracer();
+        tracer.trace(board, searchMode, bounded, spill, threads);
+        return tracer.bestPaths;
+    }
+
+    /**
+     * Run a search the same way as solve() and count the TraceStates it takes
+     * out of storage, for measuring how much of the search is pruned.
+     *
+     * @param board          board to trace
+     * @param searchMode     any search option that uses Storage, such as "-q"
+     * @param bounded        true for a bounded search, as with -b
+     * @param pruneDominated false to turn off the -q depth table
+     * @return number of TraceStates expanded or found to be solutions
+     */
+    static long countExpandedStates(CircuitBoard board, String searchMode, boolean bounded, boolean pruneDominated) {
+        CircuitTracer tracer = new CircuitTracer();
+        tracer.pruneDominated = pruneDominated;
+        tracer.trace(board, searchMode, bounded, false, 1);
+        return tracer.statesExpanded;
+    }
+
+    /**
+     * Run a -s or -q search that spills its states as with -f, but with the
+     * given number of states to a segment, so that even a small search
+     * writes most of its states to temporary files.
+     *
+     * @param board       board to trace
+     * @param searchMode  "-s" or "-q"
+     * @param bounded     true for a bounded search, as with -b
+     * @param segmentSize number of TraceStates written to each temporary file
+     * @return all shortest traces, empty if there are none
+     */
+    static ArrayList<TraceState> solveSpilling(CircuitBoard board, String searchMode, boolean bounded, int segmentSize) {
+        CircuitTracer tracer = new CircuitTracer();
+        tracer.spillSegmentSize = segmentSize;
+        tracer.trace(board, searchMode, bounded, true, 1);
+        return tracer.bestPaths;
+    }
+
+    /**
+     * @param e exception or error thrown while loading or tracing a board
+     * @return the message reported for it
+     */
+    static String errorMessage(Throwable e) {
+        return " An error Occurred! Try again. " + e + e.getMessage();
+    }
 
+    /**
+     * Run the search chosen on the command line, passing every solution to addSolution().
+     *
+     * @param board      board to trace
+     * @param searchMode search option other than -n
+     * @param bounded    true for a bounded -s or -q search
+     * @param spill      true to spill -s or -q search states to temporary files
+     * @param threads    number of worker threads for -p
+     */
+    private void trace(CircuitBoard board, String searchMode, boolean bounded, boolean spill, int threads) {
+        TracerEvents.SearchEvent event = new TracerEvents.SearchEvent();
+        event.begin();
+        if (searchMode.equals("-d")) {
+            new DistanceFieldTracer(board).forEachShortestPath(this::addSolution);
+        } else if (searchMode.equals("-m")) {
+            new BidirectionalTracer(board).forEachShortestPath(this::addSolution);
+        } else if (searchMode.equals("-j")) {
+            TraceState solution = new JumpPointTracer(board).trace();
+            if (solution != null) {
+                addSolution(solution);
+            }
+        } else if (searchMode.equals("-p")) {
+            for (TraceState solution : new ParallelTracer(board, threads).getShortestPaths()) {
+                addSolution(solution);
+            }
+        } else if (searchMode.equals("-a")) {
+            Storage<TraceState> stateStore = Storage.getPriorityInstance(TraceState.BEST_FIRST);
+            storeInitialStates(board, stateStore);
+            searchBounded(stateStore, true);
+        } else if (searchMode.equals("-i")) {
+            searchDeepening(board);
+        } else {
+            Storage<TraceState> stateStore;
+            if (spill) {
+                TraceStateCodec codec = new TraceStateCodec(board);
+                stateStore = new Storage<TraceState>(searchMode.equals("-q") ? Storage.DataStructure.spillQueue : Storage.DataStructure.spillStack,
+                        codec, (spillSegmentSize > 0) ? spillSegmentSize : codec.segmentSize(Runtime.getRuntime().maxMemory()));
+            } else {
+                stateStore = new Storage<TraceState>(searchMode.equals("-q") ? Storage.DataStructure.arrayQueue : Storage.DataStructure.arrayStack);
+            }
+            breadthFirst = searchMode.equals("-q");
+            if (breadthFirst && pruneDominated) {
+                bestDepth = new int[board.numRows() * board.numCols()];
+                Arrays.fill(bestDepth, Integer.MAX_VALUE);
+                depthCols = board.numCols();
+            }
+            storeInitialStates(board, stateStore);
+            if (bounded) {
+                searchBounded(stateStore, false);
+            } else {
+                search(stateStore);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = board.numRows();
+            event.cols = board.numCols();
+            event.strategy = searchMode;
+            event.statesExpanded = statesExpanded;
+            event.solutions = solutionsFound;
+            event.resultLength = (bestLength == Integer.MAX_VALUE) ? 0 : bestLength;
+            event.commit();
+        }
+    }
+
+    /**
+     * Keep a solution if it ties the best found so far, dropping all of the
+     * previous solutions if it is shorter. With an output writer the solution
+     * is written straight away instead.
+     *
+     * @param solution TraceState that ends next to the ending point
+     */
+    private void addSolution(TraceState solution) {
+        solutionsFound++;
+        checkInterrupted();
+        if (solution.pathLength() < bestLength) {
+            bestPaths.clear();
+            bestLength = solution.pathLength();
+        }
+        if (solution.pathLength() == bestLength) {
+            if (output != null) {
+                beginPhase(TracerStats.WRITING);
+                output.write(solution);
+                beginPhase(TracerStats.SEARCHING);
+            } else {
+                bestPaths.add(solution);
+            }
+        }
+    }
+
+    /**
+     * Count a TraceState taken out of storage, publishing the counts every
+     * PUBLISH_INTERVAL states so --stats can still be watched live over JMX.
+     */
+    private void expanded() {
+        statesExpanded++;
+        if (stats != null && statesExpanded % PUBLISH_INTERVAL == 0) {
+            publishStats();
+        }
+    }
+
+    /**
+     * Copy the counts of the search to stats, if there are stats to keep.
+     */
+    private void publishStats() {
+        if (stats != null) {
+            stats.publish(statesGenerated, statesExpanded, statesPruned, peakStorageSize, solutionsFound);
+        }
+    }
+
+    /**
+     * Start timing another phase of the solve, if there are stats to keep.
+     *
+     * @param next TracerStats.LOADING, SEARCHING, WRITING or DONE
+     */
+    private void beginPhase(String next) {
+        if (stats != null) {
+            stats.beginPhase(next);
+        }
+    }
+
+    /**
+     * Stop the search if its thread has been interrupted, as TraceServer does
+     * when a request runs out of time. Searches keep nothing that needs
+     * cleaning up, so they simply unwind.
+     *
+     * @throws CancellationException if the current thread is interrupted
+     */
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("search interrupted");
+        }
+    }
+
+    /**
+     * Store a new TraceState, unless the bestDepth table shows that another
+     * stored state reached the same position in fewer steps. A trace that
+     * takes a longer way to any of its positions can be made shorter, so it
+     * is never a shortest trace and its state is dropped. States that tie the
+     * fewest steps are all kept, so no shortest trace is lost.
+     *
+     * @param stateStore storage for TraceStates still to be expanded
+     * @param state      TraceState to store
+     */
+    private void store(Storage<TraceState> stateStore, TraceState state) {
+        statesGenerated++;
+        if (bestDepth != null) {
+            int index = state.getRow() * depthCols + state.getCol();
+            if (state.pathLength() > bestDepth[index]) {    //dominated
+                statesPruned++;
+                return;
+            }
+            bestDepth[index] = state.pathLength();
+        }
+        stateStore.store(state);
+        if (stateStore.size() > peakStorageSize) {
+            peakStorageSize = stateStore.size();
+        }
+    }
+
+    /**
+     * Emit a FrontierEvent each time a -q search takes out its first state
+     * of a new path length. A queue holds states in order of path length, so
+     * at that point every state it holds has the new length.
+     *
+     * @param stateStore storage the state was just taken out of
+     * @param state      state just taken out
+     */
+    private void frontier(Storage<TraceState> stateStore, TraceState state) {
+        if (breadthFirst && state.pathLength() > frontierLength) {
+            frontierLength = state.pathLength();
+            TracerEvents.FrontierEvent event = new TracerEvents.FrontierEvent();
+            if (event.shouldCommit()) {
+                event.pathLength = frontierLength;
+                event.states = stateStore.size() + 1L;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Store the initial TraceStates around the starting point.
+     *
+     * @param board      board to trace
+     * @param stateStore storage for TraceStates still to be expanded
+     */
+    private void storeInitialStates(CircuitBoard board, Storage<TraceState> stateStore) {
+        Point startingPoint = board.getStartingPoint();
+        for (int i = -1; i <= 1; i++) { //create initial TraceStates
+            if (board.isOpen(startingPoint.x + i, startingPoint.y)) {
+                TraceState newState = new TraceState(board, startingPoint.x + i, startingPoint.y);
+                store(stateStore, newState);
+            }
+            if (board.isOpen(startingPoint.x, startingPoint.y + i)) {
+                TraceState newState2 = new TraceState(board, startingPoint.x, startingPoint.y + i);
+                store(stateStore, newState2);
+            }
+        }
+    }
+
+    /**
+     * Exhaustively expand every TraceState in stateStore, passing every
+     * solution found to addSolution().
+     *
+     * @param stateStore storage holding the initial TraceStates
+     */
+    private void search(Storage<TraceState> stateStore) {
+        while (!stateStore.isEmpty()) {
+            TraceState currentEvaluated = stateStore.retrieve();
+            expanded();
+            checkInterrupted();
+            frontier(stateStore, currentEvaluated);
+
+            if (currentEvaluated.isSolution()) {        //check for solution and add to bestpaths
+                addSolution(currentEvaluated);
+            } else {
+
+                for (int i = -1; i < 2; i++) {  //else generate all new TraceStates needed
+                    if (i == 0) continue;
+                    int newX = currentEvaluated.getRow() + i;
+                    int newY = currentEvaluated.getCol() + i;
+                    if (currentEvaluated.isOpen(newX, currentEvaluated.getCol())) {
+                            TraceState newState = new TraceState(currentEvaluated, newX, currentEvaluated.getCol());
+                            store(stateStore, newState);
+                    }
+                    if (currentEvaluated.isOpen(currentEvaluated.getRow(), newY)) {
+                        TraceState newState2 = new TraceState(currentEvaluated, currentEvaluated.getRow(), newY);
+                        store(stateStore, newState2);
+                    }
+                }
+
+            }
+        }
+    }
+
+    /**
+     * Branch-and-bound version of search(). Any TraceState whose path length
+     * plus the Manhattan distance left to the ending point is longer than the
+     * best solution found so far can never tie it, so it is discarded instead
+     * of expanded. States that could still tie are kept, so addSolution() still
+     * sees the complete set of shortest solutions.
+     * New states come from TraceState.nextStates(), most promising last, so a
+     * stack explores them first and finds a short solution to bound the rest
+     * of the search early.
+     *
+     * With a best-first stateStore, states come out in order of their lower
+     * bound, so the search stops at the first state that cannot tie the best.
+     *
+     * @param stateStore storage holding the initial TraceStates
+     * @param bestFirst  true if stateStore retrieves states in TraceState.BEST_FIRST order
+     */
+    private void searchBounded(Storage<TraceState> stateStore, boolean bestFirst) {
+        TraceState[] children = new TraceState[4];
+        while (!stateStore.isEmpty()) {
+            TraceState currentEvaluated = stateStore.retrieve();
+            expanded();
+            checkInterrupted();
+            frontier(stateStore, currentEvaluated);
+            if (currentEvaluated.minSolutionLength() > bestLength) {   //a shorter solution was found after this was stored
+                statesPruned++;
+                if (bestFirst) {    //and so was every state still in stateStore
+                    break;
+                }
+                continue;
+            }
+
+            if (currentEvaluated.isSolution()) {        //check for solution and add to bestpaths
+                addSolution(currentEvaluated);
+            } else {
+                int count = currentEvaluated.nextStates(children);  //else generate new TraceStates that can still tie the best
+                for (int i = 0; i < count; i++) {
+                    if (children[i].minSolutionLength() <= bestLength) {
+                        store(stateStore, children[i]);
+                    } else {
+                        statesGenerated++;
+                        statesPruned++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterative-deepening search. Each round is a depth-first search that
+     * drops every TraceState whose path length plus the Manhattan distance
+     * left to the ending point is over the round's limit. The first limit is
+     * the length of a straight trace, and each new round raises it to the
+     * smallest lower bound dropped by the round before, so no shorter solution
+     * can be skipped. The first round to find a solution finds all of them.
+     * Only the current path and its unexplored siblings are stored, so memory
+     * grows with the path length rather than with the number of states.
+     *
+     * @param board board to trace
+     */
+    private void searchDeepening(CircuitBoard board) {
+        Storage<TraceState> stateStore = new Storage<TraceState>(Storage.DataStructure.arrayStack);
+        TraceState[] children = new TraceState[4];
+        storeInitialStates(board, stateStore);
+        int limit = Integer.MAX_VALUE;
+        while (!stateStore.isEmpty()) {  //the first limit is the smallest lower bound of the initial states
+            limit = Math.min(limit, stateStore.retrieve().minSolutionLength());
+        }
+        while (bestLength == Integer.MAX_VALUE && limit != Integer.MAX_VALUE) {   //until a round finds a solution or drops nothing
+            int nextLimit = Integer.MAX_VALUE;
+            storeInitialStates(board, stateStore);
+            while (!stateStore.isEmpty()) {
+                TraceState currentEvaluated = stateStore.retrieve();
+                expanded();
+                checkInterrupted();
+                if (currentEvaluated.minSolutionLength() > limit) {    //too long for this round
+                    statesPruned++;
+                    nextLimit = Math.min(nextLimit, currentEvaluated.minSolutionLength());
+                    continue;
+                }
+                if (currentEvaluated.isSolution()) {
+                    addSolution(currentEvaluated);
+                    continue;
+                }
+                int count = currentEvaluated.nextStates(children);
+                for (int i = 0; i < count; i++) {
+                    store(stateStore, children[i]);
+                }
+            }
+            limit = nextLimit;
+        }
     }
 
 } // class CircuitTracer
+
@@ -0,0 +1,469 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Performance suite for CircuitBoard, TraceState, Storage and full
+ * CircuitTracer solves, to track regressions between releases.
+ *
+ * Each benchmark is warmed up, then timed over several fixed-length
+ * iterations. The report gives throughput (ops/s), average latency (us/op)
+ * and the allocation rate of the benchmark thread (bytes/op and MB/s),
+ * measured with the JVM's per-thread allocation counter. Work done on other
+ * threads, such as the -p worker pool, is timed but not counted as allocation.
+ *
+ * To RUN: java CircuitTracerBenchmark [group ...]
+ * where the groups are parse, copy, trace, storage, solve, pruning, synthetic,
+ * incremental and jump.
+ * All groups run when none are given.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class CircuitTracerBenchmark {
+    // timing of every benchmark
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+
+    // search options for end-to-end solves of the sample boards
+    private static final String[][] SOLVE_MODES = {{"-s"}, {"-q"}, {"-s", "-b"}, {"-a"}, {"-i"}, {"-d"}, {"-m"}, {"-j"}, {"-n"}, {"-p", "2"}};
+
+    // synthetic boards: side length and fraction of blocked positions
+    private static final int[] SYNTHETIC_SIZES = {8, 16, 24};
+    private static final double[] SYNTHETIC_DENSITIES = {0.1, 0.3};
+
+    // boards for comparing DistanceFieldTracer edits with building it again
+    private static final int[] INCREMENTAL_SIZES = {100, 500};
+
+    // boards for comparing JumpPointTracer with a breadth-first search of every position
+    private static final int[] JUMP_SIZES = {100, 1000};
+    private static final double[] JUMP_DENSITIES = {0.0, 0.1};
+
+    private static final String BOARDS_DIR = "boards";
+    private static final String[] PRUNING_BOARDS = {"valid3.dat", "valid4.dat", "valid8.dat"};
+
+    /**
+     * encoding for the Storage benchmarks of the data structures that spill to disk
+     */
+    private static final Storage.Codec<Integer> INTEGER_CODEC = new Storage.Codec<Integer>() {
+        @Override
+        public int encodedSize(Integer element) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer element, ByteBuffer out) {
+            out.putInt(element);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer in) {
+            return in.getInt();
+        }
+    };
+
+    /**
+     * results are stored here so the JIT cannot discard the benchmarked work
+     */
+    private static volatile Object sink;
+
+    /**
+     * Run the requested benchmark groups.
+     *
+     * @param args benchmark groups to run, all of them if empty
+     * @throws FileNotFoundException if a board file cannot be read or written
+     */
+    public static void main(String[] args) throws FileNotFoundException {
+        List<String> groups = Arrays.asList(args.length > 0 ? args
+                : new String[]{"parse", "copy", "trace", "storage", "solve", "pruning", "synthetic", "incremental", "jump"});
+        System.out.printf("%-56s %14s %12s %14s %10s%n", "Benchmark", "ops/s", "us/op", "alloc B/op", "alloc MB/s");
+        if (groups.contains("parse")) {
+            parseBenchmarks();
+        }
+        if (groups.contains("copy")) {
+            copyBenchmarks();
+        }
+        if (groups.contains("trace")) {
+            traceStateBenchmarks();
+        }
+        if (groups.contains("storage")) {
+            storageBenchmarks();
+        }
+        if (groups.contains("solve")) {
+            solveBenchmarks();
+        }
+        if (groups.contains("pruning")) {
+            pruningBenchmarks();
+        }
+        if (groups.contains("synthetic")) {
+            syntheticBenchmarks();
+        }
+        if (groups.contains("incremental")) {
+            incrementalBenchmarks();
+        }
+        if (groups.contains("jump")) {
+            jumpBenchmarks();
+        }
+    }
+
+    //////////////////////////
+    // XXX Benchmark groups
+    //////////////////////////
+
+    /**
+     * Both board file readers on a sample board and on generated boards, and
+     * reading the generated boards once converted to binary board files.
+     */
+    private static void parseBenchmarks() throws FileNotFoundException {
+        String sample = BOARDS_DIR + File.separator + "valid8.dat";
+        measure("parse CircuitBoard(String) valid8", () -> newBoard(sample));
+        measure("parse BoardLoader.load valid8", () -> loadBoard(sample));
+        for (int size : new int[]{200, 2000}) {
+            File file = writeSyntheticBoard(size, 0.3);
+            measure("parse CircuitBoard(String) " + size + "x" + size, () -> newBoard(file.getPath()));
+            measure("parse BoardLoader.load " + size + "x" + size, () -> loadBoard(file.getPath()));
+            File binary = new File(file.getPath() + ".ctb");
+            try {
+                BinaryBoard.write(loadBoard(file.getPath()), binary.getPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            measure("parse BoardLoader.load binary " + size + "x" + size, () -> loadBoard(binary.getPath()));
+            binary.delete();
+            file.delete();
+        }
+    }
+
+    /**
+     * The CircuitBoard copy constructor at several sizes.
+     */
+    private static void copyBenchmarks() throws FileNotFoundException {
+        for (int size : new int[]{10, 200, 2000}) {
+            File file = writeSyntheticBoard(size, 0.3);
+            CircuitBoard board = BoardLoader.load(file.getPath());
+            measure("copy CircuitBoard(CircuitBoard) " + size + "x" + size, () -> new CircuitBoard(board));
+            file.delete();
+        }
+    }
+
+    /**
+     * Creating a child TraceState, rebuilding a solution's board from it and
+     * rendering it for output.
+     */
+    private static void traceStateBenchmarks() throws FileNotFoundException {
+        for (int size : new int[]{10, 200}) {
+            File file = writeSyntheticBoard(size, 0.0);
+            CircuitBoard board = BoardLoader.load(file.getPath());
+            TraceState first = new TraceState(board, 0, 1);
+            measure("TraceState child " + size + "x" + size, () -> new TraceState(first, 0, 2));
+            TraceState path = first;
+            for (int col = 2; col < size; col++) {    //trace along the top row
+                path = new TraceState(path, 0, col);
+            }
+            TraceState fullRow = path;
+            measure("TraceState.getBoard() " + size + "x" + size, () -> fullRow.getBoard());
+            measure("TraceState.toString() " + size + "x" + size, () -> fullRow.toString());
+            SolutionWriter writer = new SolutionWriter(OutputStream.nullOutputStream(), board);
+            measure("SolutionWriter.write " + size + "x" + size, () -> {
+                writer.write(fullRow);
+                return writer;
+            });
+            file.delete();
+        }
+    }
+
+    /**
+     * Storing and retrieving a batch of elements in each Storage data structure.
+     */
+    private static void storageBenchmarks() {
+        int batch = 1000;
+        Integer[] elements = new Integer[batch];
+        Random rand = new Random(221);
+        for (int i = 0; i < batch; i++) {
+            elements[i] = rand.nextInt();
+        }
+        for (Storage.DataStructure dataStructure : Storage.DataStructure.values()) {
+            measure("Storage " + dataStructure + " store+retrieve x" + batch, () -> {
+                Storage<Integer> store;
+                if (dataStructure == Storage.DataStructure.spillStack || dataStructure == Storage.DataStructure.spillQueue) {
+                    store = new Storage<Integer>(dataStructure, INTEGER_CODEC, batch / 4);    //spill most of the batch
+                } else if (dataStructure == Storage.DataStructure.priority) {
+                    store = new Storage<Integer>(dataStructure, Integer::compare);
+                } else {
+                    store = new Storage<Integer>(dataStructure);
+                }
+                for (Integer element : elements) {
+                    store.store(element);
+                }
+                Integer last = null;
+                while (!store.isEmpty()) {
+                    last = store.retrieve();
+                }
+                return last;
+            });
+        }
+    }
+
+    /**
+     * End-to-end solves of every sample board in every search mode.
+     */
+    private static void solveBenchmarks() {
+        File[] boards = new File(BOARDS_DIR).listFiles((dir, name) -> name.startsWith("valid") && name.endsWith(".dat"));
+        if (boards == null) {
+            System.out.println("no " + BOARDS_DIR + " directory - run from the directory with the source files");
+            return;
+        }
+        Arrays.sort(boards);
+        for (File board : boards) {
+            for (String[] mode : SOLVE_MODES) {
+                solve(board, mode);
+            }
+        }
+    }
+
+    /**
+     * Queue searches with and without the depth-dominance table, labelled
+     * with the number of TraceStates each one expands.
+     */
+    private static void pruningBenchmarks() throws FileNotFoundException {
+        ArrayList<File> boards = new ArrayList<File>();
+        for (String name : PRUNING_BOARDS) {
+            boards.add(new File(BOARDS_DIR, name));
+        }
+        File synthetic = writeSyntheticBoard(6, 0.1);
+        boards.add(synthetic);
+        for (File file : boards) {
+            CircuitBoard board = BoardLoader.load(file.getPath());
+            for (boolean bounded : new boolean[]{false, true}) {
+                for (boolean prune : new boolean[]{false, true}) {
+                    long states = CircuitTracer.countExpandedStates(board, "-q", bounded, prune);
+                    String name = "-q" + (bounded ? " -b" : "") + (prune ? " depth table " : " no table ") + file.getName();
+                    measure(name + " (" + states + " states)", () -> CircuitTracer.countExpandedStates(board, "-q", bounded, prune));
+                }
+            }
+        }
+        synthetic.delete();
+    }
+
+    /**
+     * End-to-end solves of generated boards of each size and density. The
+     * exhaustive modes only run on the smallest boards.
+     */
+    private static void syntheticBenchmarks() throws FileNotFoundException {
+        for (int size : SYNTHETIC_SIZES) {
+            for (double density : SYNTHETIC_DENSITIES) {
+                File board = writeSyntheticBoard(size, density);
+                solve(board, new String[]{"-d"});
+                if (size <= 8) {
+                    solve(board, new String[]{"-a"});
+                    solve(board, new String[]{"-s", "-b"});
+                }
+                board.delete();
+            }
+        }
+    }
+
+    /**
+     * Blocking and reopening one position of a solved board with
+     * DistanceFieldTracer.setOpen, against building the distance fields again.
+     */
+    private static void incrementalBenchmarks() throws FileNotFoundException {
+        for (int size : INCREMENTAL_SIZES) {
+            File file = writeSyntheticBoard(size, 0.3);
+            CircuitBoard board = newBoard(file.getPath());
+            measure("DistanceFieldTracer(CircuitBoard) " + size + "x" + size, () -> new DistanceFieldTracer(board));
+            DistanceFieldTracer tracer = new DistanceFieldTracer(board);
+            int row = size / 2;
+            int col = size / 2;
+            while (!board.isOpen(row, col)) {  //an open position in the middle, where most traces pass
+                col++;
+            }
+            int editRow = row;
+            int editCol = col;
+            measure("DistanceFieldTracer.setOpen block+open " + size + "x" + size, () -> {
+                tracer.setOpen(editRow, editCol, false);
+                tracer.setOpen(editRow, editCol, true);
+                return tracer.shortestPathLength();
+            });
+            file.delete();
+        }
+    }
+
+    /**
+     * One shortest trace of open and lightly blocked boards found by
+     * JumpPointTracer, labelled with the number of jump points it expands,
+     * against the breadth-first search of every position that
+     * DistanceFieldTracer starts with.
+     */
+    private static void jumpBenchmarks() throws FileNotFoundException {
+        for (int size : JUMP_SIZES) {
+            for (double density : JUMP_DENSITIES) {
+                File file = writeSyntheticBoard(size, density);
+                CircuitBoard board = BoardLoader.load(file.getPath());
+                String name = size + "x" + size + " " + Math.round(density * 100) + "% blocked";
+                JumpPointTracer tracer = new JumpPointTracer(board);
+                tracer.tracePath();
+                measure("JumpPointTracer.tracePath " + name + " (" + tracer.getNodesExpanded() + " nodes)", () -> tracer.tracePath());
+                measure("DistanceFieldTracer(CircuitBoard) " + name, () -> new DistanceFieldTracer(board));
+                file.delete();
+            }
+        }
+    }
+
+    //////////////////////////
+    // XXX Measurement
+    //////////////////////////
+
+    /**
+     * Run CircuitTracer on a board file with console output discarded.
+     */
+    private static void solve(File board, String[] mode) {
+        String[] args = Arrays.copyOf(mode, mode.length + 2);
+        args[mode.length] = "-c";
+        args[mode.length + 1] = board.getPath();
+        PrintStream console = System.out;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        String name = "solve " + String.join(" ", mode) + " " + board.getName();
+        try {
+            System.setOut(discard);
+            Result result = run(() -> new CircuitTracer(args));
+            System.setOut(console);
+            report(name, result);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Warm up, time and report one benchmark.
+     *
+     * @param name      label for the report
+     * @param operation work to measure, returning a result that is kept alive
+     */
+    private static void measure(String name, Supplier<Object> operation) {
+        report(name, run(operation));
+    }
+
+    /**
+     * Warm up, then time MEASURED_ITERATIONS iterations of operation.
+     */
+    private static Result run(Supplier<Object> operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(operation);
+        }
+        Result total = new Result();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            Result result = iteration(operation);
+            total.operations += result.operations;
+            total.nanos += result.nanos;
+            total.bytes += result.bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Repeat operation until ITERATION_NANOS have passed.
+     */
+    private static Result iteration(Supplier<Object> operation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Result result = new Result();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        do {
+            sink = operation.get();
+            result.operations++;
+            result.nanos = System.nanoTime() - start;
+        } while (result.nanos < ITERATION_NANOS);
+        result.bytes = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return result;
+    }
+
+    /**
+     * Print one line of the report.
+     */
+    private static void report(String name, Result result) {
+        double seconds = result.nanos / 1e9;
+        System.out.printf("%-56s %14.1f %12.3f %14.1f %10.1f%n", name, result.operations / seconds,
+                result.nanos / 1e3 / result.operations, (double) result.bytes / result.operations,
+                result.bytes / seconds / 1e6);
+    }
+
+    /**
+     * Operations, time and allocation of one or more iterations.
+     */
+    private static class Result {
+        private long operations;
+        private long nanos;
+        private long bytes;
+    }
+
+    //////////////////////////
+    // XXX Boards
+    //////////////////////////
+
+    /**
+     * CircuitBoard(String) without the checked exception, for use in a Supplier.
+     */
+    private static CircuitBoard newBoard(String fileName) {
+        try {
+            return new CircuitBoard(fileName);
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * BoardLoader.load(String) without the checked exception, for use in a Supplier.
+     */
+    private static CircuitBoard loadBoard(String fileName) {
+        try {
+            return BoardLoader.load(fileName);
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write a square board with the given fraction of blocked positions, the
+     * '1' near the middle of the left edge and the '2' near the middle of the
+     * right edge. The same size and density always give the same board.
+     *
+     * @param size    number of rows and columns
+     * @param density fraction of positions that are blocked
+     * @return the generated file
+     * @throws FileNotFoundException if the file cannot be written
+     */
+    private static File writeSyntheticBoard(int size, double density) throws FileNotFoundException {
+        Random rand = new Random(size * 1000L + Math.round(density * 100));
+        File file = new File("synthetic" + size + "x" + size + "-" + Math.round(density * 100) + ".dat");
+        PrintStream out = new PrintStream(file);
+        out.println(size + " " + size);
+        StringBuilder line = new StringBuilder(size * 2);
+        for (int row = 0; row < size; row++) {
+            line.setLength(0);
+            for (int col = 0; col < size; col++) {
+                char c = rand.nextDouble() < density ? 'X' : 'O';
+                if (row == size / 2 && col == 0) {
+                    c = '1';
+                } else if (row == size / 2 && col == size - 1) {
+                    c = '2';
+                }
+                line.append(c).append(' ');
+            }
+            out.println(line);
+        }
+        out.close();
+        return file;
+    }
+
+} // class CircuitTracerBenchmark
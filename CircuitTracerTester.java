@@ -1,9 +1,22 @@
+import java.awt.Point;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -31,6 +44,15 @@ public class CircuitTracerTester {
 	// command line arguments for CircuitTracer
 	private static final String STACK = "-s";
 	private static final String QUEUE = "-q";
+	private static final String BOUNDED = "-b";
+	private static final String DISTANCE_FIELD = "-d";
+	private static final String PARALLEL = "-p";
+	private static final String BEST_FIRST = "-a";
+	private static final String DEEPENING = "-i";
+	private static final String BIDIRECTIONAL = "-m";
+	private static final String JUMP_POINT = "-j";
+	private static final String SPILL = "-f";
+	private static final String COUNT = "-n";
 	private static final String CONSOLE = "-c";
 	private static final String GUI = "-g";
 	private static final String INVALID_OPTION = "-z";
@@ -39,7 +61,7 @@ public class CircuitTracerTester {
 	private static final String NO_SUCH = "noSuchFile";
 
 	// tracking number of tests and test results
-	private final int EXPECTED_TOTAL_TESTS = 86;
+	private final int EXPECTED_TOTAL_TESTS = 199;
 	private int totalTests;
 	private int passes = 0;
 	private int failures = 0;
@@ -343,6 +365,106 @@ public class CircuitTracerTester {
 			e.printStackTrace();
 		}
 
+		// CircuitTracer Search Option Tests
+		// - every search option on every valid input file
+		System.out.println("**********************************");
+		System.out.println("CircuitTracer Search Option Tests");
+		System.out.println("**********************************\n");
+		try {
+			testSearchOptions(STACK, BOUNDED);
+			testSearchOptions(QUEUE, BOUNDED);
+			testSearchOptions(DISTANCE_FIELD);
+			testSearchOptions(PARALLEL, "2");
+			testSearchOptions(BEST_FIRST);
+			testSearchOptions(DEEPENING);
+			testSearchOptions(BIDIRECTIONAL);
+			testSearchOptions(SPILL, STACK);
+			testSearchOptions(SPILL, QUEUE);
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE CIRCUITTRACER SEARCH OPTION TESTS\n");
+			e.printStackTrace();
+		}
+
+		// Search Engine Tests
+		// - search engines checked against each other, on the valid input
+		// files and on generated boards
+		System.out.println("********************");
+		System.out.println("Search Engine Tests");
+		System.out.println("********************\n");
+		try {
+			printTest("CircuitTracer -q depth table prunes states", testDepthPruning());
+			printTest("CircuitTracer -n valid files", testCountShortestPaths());
+			printTest("Storage spillStack order", testSpillOrder(Storage.DataStructure.spillStack));
+			printTest("Storage spillQueue order", testSpillOrder(Storage.DataStructure.spillQueue));
+			printTest("TraceStateCodec through spillQueue", testSpillTraceStates());
+			printTest("CircuitTracer -s and -q spilling states", testSpillSearch());
+			printTest("DistanceFieldTracer.setOpen() random boards", testIncrementalEdits(randomBoards(12)));
+			printTest("HierarchicalTracer.trace(true) valid files", testHierarchicalExact(validBoards()));
+			printTest("HierarchicalTracer.trace(true) random boards", testHierarchicalExact(randomBoards(24)));
+			printTest("CircuitTracer.solve() -j valid files", testJumpPoint());
+			printTest("JumpPointTracer.tracePath() random boards", testJumpPointLength(randomBoards(24)));
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE SEARCH ENGINE TESTS\n");
+			e.printStackTrace();
+		}
+
+		// Board File Tests
+		// - binary boards converted, detected and checked before allocation
+		System.out.println("*****************");
+		System.out.println("Board File Tests");
+		System.out.println("*****************\n");
+		try {
+			printTest("BinaryBoard -p round trips", testBinaryRoundTrip(true));
+			printTest("BinaryBoard run length round trips", testBinaryRoundTrip(false));
+			printTest("CircuitBoard() detects binary files", testBinaryDetection());
+			printTest("BinaryBoard.read() position limit and runs", testBinaryLimits());
+			printTest("BoardLoader matches CircuitBoard()", testLoaderMessages());
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE BOARD FILE TESTS\n");
+			e.printStackTrace();
+		}
+
+		// ResultCache Tests
+		// - results found again after they are cached, and evicted at the size limit
+		System.out.println("******************");
+		System.out.println("ResultCache Tests");
+		System.out.println("******************\n");
+		try {
+			printTest("ResultCache.get() after put()", testCacheHits());
+			printTest("ResultCache eviction at its size limit", testCacheEviction());
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE RESULTCACHE TESTS\n");
+			e.printStackTrace();
+		}
+
+		// BatchTracer Tests
+		// - a batch of valid and invalid files checked against the known solutions and CircuitTracer
+		System.out.println("******************");
+		System.out.println("BatchTracer Tests");
+		System.out.println("******************\n");
+		try {
+			printTest("BatchTracer -q valid and invalid files", testBatch());
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE BATCHTRACER TESTS\n");
+			e.printStackTrace();
+		}
+
+		// MultiNetRouter Tests
+		// - nets routed with their expected lengths, ripped up, left unroutable, and format errors
+		System.out.println("*********************");
+		System.out.println("MultiNetRouter Tests");
+		System.out.println("*********************\n");
+		try {
+			printTest("MultiNetRouter routes nets1.dat", testRoute(NETS_1_FILENAME, NETS_1_LENGTHS, false));
+			printTest("MultiNetRouter rips up a blocking net", testRoute(NETS_RIP_UP_FILENAME, NETS_RIP_UP_LENGTHS, true));
+			printTest("MultiNetRouter leaves a net unroutable",
+					testRoute(NETS_UNROUTABLE_FILENAME, NETS_UNROUTABLE_LENGTHS, false));
+			printTest("MultiNetRouter format error messages", testNetsErrors());
+		} catch (Exception e) {
+			System.out.printf("***UNABLE TO RUN/COMPLETE MULTINETROUTER TESTS\n");
+			e.printStackTrace();
+		}
+
 		// report final verdict
 		printFinalSummary();
 	}
@@ -537,9 +659,23 @@ public class CircuitTracerTester {
 	 */
 	private boolean testCircuitTracerValidFile(String storage, String outputTarget, String fileName,
 			char[][][] solutions) {
+		String[] args = { storage, outputTarget, fileName };
+		return testCircuitTracerValidFile(args, solutions);
+	}
+
+	/**
+	 * Confirm CircuitTracer produces correct results in the expected output format
+	 * when given any command line arguments that end with a valid input file.
+	 * 
+	 * @param args      options followed by the input file
+	 * @param solutions expected solutions
+	 * @return true if test passes, else false
+	 */
+	private boolean testCircuitTracerValidFile(String[] args, char[][][] solutions) {
 		totalTests += 1;
 		Result result;
-		System.out.printf("Testing CircuitTracer({\"%s\" \"%s\" \"%s\"})\n", storage, outputTarget, fileName);
+		String fileName = args[args.length - 1];
+		System.out.printf("Testing CircuitTracer({\"%s\"})\n", String.join("\" \"", args));
 		// remember console output streams for stdout and stderr
 		PrintStream consoleOut = System.out;
 		PrintStream consoleErr = System.err;
@@ -549,11 +685,10 @@ public class CircuitTracerTester {
 			PrintStream fileOut = new PrintStream(outfile);
 			System.setOut(fileOut);
 			System.setErr(fileOut);
-			// run CircuitTracer with the specified storage argument (-s or -q), output
+			// run CircuitTracer with the specified search options, output
 			// target argument (-c or -g), and input file argument
 			ExecutorService executor = Executors.newSingleThreadExecutor();
 			executor.submit(() -> {
-				String[] args = { storage, outputTarget, fileName };
 				new CircuitTracer(args);
 			});
 			try {
@@ -604,6 +739,24 @@ public class CircuitTracerTester {
 		return result == Result.ValidOutput;
 	}
 
+	/**
+	 * Run CircuitTracer with the given search options and console output on
+	 * every valid input file, confirming each prints exactly its known
+	 * solutions.
+	 * 
+	 * @param options search options, such as "-s" "-b"
+	 */
+	private void testSearchOptions(String... options) {
+		for (int i = 0; i < VALID_FILENAMES.length; i++) {
+			String[] args = new String[options.length + 2];
+			System.arraycopy(options, 0, args, 0, options.length);
+			args[options.length] = CONSOLE;
+			args[options.length + 1] = VALID_FILENAMES[i];
+			printTest("CircuitTracer({\"" + String.join("\", \"", args) + "\"})",
+					testCircuitTracerValidFile(args, VALID_SOLUTIONS[i]));
+		}
+	}
+
 	/**
 	 * Confirm CircuitTracer reports messages and exits cleanly when given an
 	 * invalid input file.
@@ -996,6 +1149,1017 @@ public class CircuitTracerTester {
 		return result == Result.ValidOutput;
 	}
 
+	//////////////////////////////
+	// XXX Search Engine Tests
+	//////////////////////////////
+
+	/**
+	 * Confirm the -q depth table never makes a search expand more states than
+	 * it would without the table, and expands fewer on the valid files overall.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testDepthPruning() {
+		totalTests += 1;
+		System.out.printf("Testing CircuitTracer -q with and without the depth table on the valid files\n");
+		boolean passed = true;
+		try {
+			long prunedTotal = 0;
+			long unprunedTotal = 0;
+			for (String filename : VALID_FILENAMES) {
+				CircuitBoard board = new CircuitBoard(filename);
+				long pruned = CircuitTracer.countExpandedStates(board, QUEUE, false, true);
+				long unpruned = CircuitTracer.countExpandedStates(board, QUEUE, false, false);
+				if (pruned > unpruned) {
+					System.out.printf("%s: %d states expanded with the depth table, but %d without it\n", filename, pruned,
+							unpruned);
+					passed = false;
+				}
+				prunedTotal += pruned;
+				unprunedTotal += unpruned;
+			}
+			if (prunedTotal >= unprunedTotal) {
+				System.out.printf("The depth table pruned nothing: %d states expanded with it, %d without it\n",
+						prunedTotal, unprunedTotal);
+				passed = false;
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Confirm DistanceFieldTracer.countShortestPaths() counts exactly the known
+	 * solutions of every valid file, shortestPathLength() gives their length,
+	 * and CircuitTracer -n -c prints both.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testCountShortestPaths() {
+		totalTests += 1;
+		System.out.printf("Testing CircuitTracer %s and DistanceFieldTracer on the valid files\n", COUNT);
+		boolean passed = true;
+		try {
+			for (int i = 0; i < VALID_FILENAMES.length; i++) {
+				String filename = VALID_FILENAMES[i];
+				DistanceFieldTracer tracer = new DistanceFieldTracer(new CircuitBoard(filename));
+				BigInteger expectedCount = BigInteger.valueOf(VALID_SOLUTIONS[i].length);
+				int expectedLength = traceLength(VALID_SOLUTIONS[i]);
+				String expected = "There are " + expectedCount + " solutions." + System.lineSeparator()
+						+ (expectedLength > 0 ? "Shortest Path: " + expectedLength + System.lineSeparator() : "");
+				String printed = captureOutput(() -> new CircuitTracer(new String[] { COUNT, CONSOLE, filename }),
+						filename + ".out");
+				if (!tracer.countShortestPaths().equals(expectedCount) || tracer.shortestPathLength() != expectedLength
+						|| !printed.equals(expected)) {
+					System.out.printf("%s: %s solutions of length %d, printed as\n%sbut expected\n%s", filename,
+							tracer.countShortestPaths(), tracer.shortestPathLength(), printed, expected);
+					passed = false;
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Store and retrieve integers in a spillStack or spillQueue with segments
+	 * of 4, so that most of them pass through temporary files, and confirm
+	 * they come back in the same LIFO or FIFO order as from an ArrayDeque.
+	 * 
+	 * @param dataStructure spillStack or spillQueue
+	 * @return true if test passes, else false
+	 */
+	private boolean testSpillOrder(Storage.DataStructure dataStructure) {
+		totalTests += 1;
+		System.out.printf("Testing Storage %s with 4 elements to a segment\n", dataStructure);
+		boolean passed = true;
+		try {
+			int[] spilled = { 0 };
+			Storage.Codec<Integer> codec = new Storage.Codec<Integer>() {
+				public int encodedSize(Integer element) {
+					return Integer.BYTES;
+				}
+
+				public void encode(Integer element, ByteBuffer out) {
+					out.putInt(element);
+					spilled[0]++;
+				}
+
+				public Integer decode(ByteBuffer in) {
+					return in.getInt();
+				}
+			};
+			Storage<Integer> storage = new Storage<Integer>(dataStructure, codec, 4);
+			ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+			boolean stack = (dataStructure == Storage.DataStructure.spillStack);
+			Random rand = new Random(4);
+			int next = 0;
+			for (int step = 0; step < 3000; step++) {
+				if (step < 2000 && (expected.isEmpty() || rand.nextInt(3) > 0)) {	//the storage grows, then empties
+					storage.store(next);
+					if (stack) {
+						expected.addFirst(next);
+					} else {
+						expected.addLast(next);
+					}
+					next++;
+				} else if (!expected.isEmpty()) {
+					int retrieved = storage.retrieve();
+					int first = expected.removeFirst();
+					if (retrieved != first) {
+						System.out.printf("Retrieved %d instead of %d\n", retrieved, first);
+						return false;
+					}
+				}
+				if (storage.size() != expected.size() || storage.isEmpty() != expected.isEmpty()) {
+					System.out.printf("Size %d instead of %d\n", storage.size(), expected.size());
+					return false;
+				}
+			}
+			if (spilled[0] == 0) {
+				System.out.printf("Nothing was spilled\n");
+				passed = false;
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Store states of a breadth-first search of each valid file in a
+	 * spillQueue of TraceStates with segments of 2, and confirm each state
+	 * comes back from its temporary file with the same path.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testSpillTraceStates() {
+		totalTests += 1;
+		System.out.printf("Testing TraceStateCodec through a spillQueue on the valid files\n");
+		boolean passed = true;
+		try {
+			for (String filename : VALID_FILENAMES) {
+				CircuitBoard board = new CircuitBoard(filename);
+				Storage<TraceState> storage = new Storage<TraceState>(Storage.DataStructure.spillQueue,
+						new TraceStateCodec(board), 2);
+				ArrayDeque<TraceState> expected = new ArrayDeque<TraceState>();
+				ArrayDeque<TraceState> search = new ArrayDeque<TraceState>();
+				Point start = board.getStartingPoint();
+				for (int i = -1; i < 2; i += 2) {
+					if (board.isOpen(start.x + i, start.y)) {
+						search.add(new TraceState(board, start.x + i, start.y));
+					}
+					if (board.isOpen(start.x, start.y + i)) {
+						search.add(new TraceState(board, start.x, start.y + i));
+					}
+				}
+				TraceState[] children = new TraceState[4];
+				while (!search.isEmpty() && expected.size() < 500) {
+					TraceState state = search.remove();
+					storage.store(state);
+					expected.add(state);
+					int count = state.nextStates(children);
+					for (int i = 0; i < count; i++) {
+						search.add(children[i]);
+					}
+				}
+				while (!expected.isEmpty()) {
+					TraceState state = expected.remove();
+					TraceState retrieved = storage.retrieve();
+					if (!retrieved.getPath().equals(state.getPath())) {
+						System.out.printf("%s: path %s came back as %s\n", filename, state.getPath(), retrieved.getPath());
+						passed = false;
+					}
+				}
+				passed &= storage.isEmpty();
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Run CircuitTracer -s and -q searches that spill their states with
+	 * segments of 2 states, so that most states pass through temporary
+	 * files, and confirm each finds exactly the known solutions of every
+	 * valid file.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testSpillSearch() {
+		totalTests += 1;
+		System.out.printf("Testing CircuitTracer.solveSpilling() on the valid files\n");
+		boolean passed = true;
+		try {
+			for (int i = 0; i < VALID_FILENAMES.length; i++) {
+				CircuitBoard board = new CircuitBoard(VALID_FILENAMES[i]);
+				for (String searchMode : new String[] { STACK, QUEUE }) {
+					ArrayList<TraceState> solutions = CircuitTracer.solveSpilling(board, searchMode, false, 2);
+					passed &= sameAsKnown(VALID_FILENAMES[i] + " " + searchMode, solutions, VALID_SOLUTIONS[i]);
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Edit each board through DistanceFieldTracer.setOpen(), blocking positions
+	 * on a shortest trace one at a time and then opening them again, and
+	 * confirm that after every edit the tracer agrees with a new tracer of the
+	 * edited board.
+	 * 
+	 * @param boards boards to edit
+	 * @return true if test passes, else false
+	 */
+	private boolean testIncrementalEdits(CircuitBoard[] boards) {
+		totalTests += 1;
+		System.out.printf("Testing DistanceFieldTracer.setOpen() on %d boards\n", boards.length);
+		boolean passed = true;
+		try {
+			Random rand = new Random(boards.length);
+			for (CircuitBoard board : boards) {
+				DistanceFieldTracer tracer = new DistanceFieldTracer(board);
+				ArrayList<Point> blocked = new ArrayList<Point>();
+				for (int edit = 0; edit < 6 && tracer.shortestPathLength() > 0; edit++) {
+					ArrayList<Point> onPath = new ArrayList<Point>();
+					for (int row = 0; row < board.numRows(); row++) {
+						for (int col = 0; col < board.numCols(); col++) {
+							if (tracer.isOnShortestPath(row, col)) {
+								onPath.add(new Point(row, col));
+							}
+						}
+					}
+					Point position = onPath.get(rand.nextInt(onPath.size()));
+					tracer.setOpen(position.x, position.y, false);
+					blocked.add(position);
+					passed &= sameDistances(tracer, board);
+				}
+				for (int i = blocked.size() - 1; i >= 0; i--) {
+					tracer.setOpen(blocked.get(i).x, blocked.get(i).y, true);
+					passed &= sameDistances(tracer, board);
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * @return true if tracer finds the same shortest traces as a new
+	 *         DistanceFieldTracer of a copy of its edited board
+	 */
+	private boolean sameDistances(DistanceFieldTracer tracer, CircuitBoard board) {
+		DistanceFieldTracer fresh = new DistanceFieldTracer(new CircuitBoard(board));
+		boolean same = tracer.shortestPathLength() == fresh.shortestPathLength()
+				&& tracer.countShortestPaths().equals(fresh.countShortestPaths());
+		for (int row = 0; row < board.numRows(); row++) {
+			for (int col = 0; col < board.numCols(); col++) {
+				same &= tracer.isOnShortestPath(row, col) == fresh.isOnShortestPath(row, col);
+			}
+		}
+		if (!same) {
+			System.out.printf("After setOpen(), shortest length %d and %s traces, but a new tracer finds %d and %s on\n%s",
+					tracer.shortestPathLength(), tracer.countShortestPaths(), fresh.shortestPathLength(),
+					fresh.countShortestPaths(), board);
+		}
+		return same;
+	}
+
+	/**
+	 * Generate boards of random sizes, from 20 to 120 rows and columns, with up
+	 * to 40% of their positions blocked. The same count always gives the same
+	 * boards.
+	 * 
+	 * @param count number of boards
+	 * @return the boards
+	 * @throws FileNotFoundException
+	 */
+	private CircuitBoard[] randomBoards(int count) throws FileNotFoundException {
+		Random rand = new Random(count);
+		CircuitBoard[] boards = new CircuitBoard[count];
+		for (int i = 0; i < count; i++) {
+			int rows = 20 + rand.nextInt(101);
+			int cols = 20 + rand.nextInt(101);
+			double density = rand.nextDouble() * 0.4;
+			char[][] contents = new char[rows][cols];
+			for (int row = 0; row < rows; row++) {
+				for (int col = 0; col < cols; col++) {
+					contents[row][col] = (rand.nextDouble() < density) ? 'X' : 'O';
+				}
+			}
+			int start = rand.nextInt(rows * cols);
+			int end = (start + 1 + rand.nextInt(rows * cols - 1)) % (rows * cols);
+			contents[start / cols][start % cols] = '1';
+			contents[end / cols][end % cols] = '2';
+			makeFile(contents, RANDOM_FILENAME);
+			boards[i] = new CircuitBoard(RANDOM_FILENAME);
+		}
+		return boards;
+	}
+
+	/**
+	 * Confirm HierarchicalTracer finds a shortest trace when asked for an
+	 * exact one, with several cluster sizes, by comparing its length with
+	 * the shortest length DistanceFieldTracer finds.
+	 * 
+	 * @param boards boards to trace
+	 * @return true if test passes, else false
+	 */
+	private boolean testHierarchicalExact(CircuitBoard[] boards) {
+		totalTests += 1;
+		System.out.printf("Testing HierarchicalTracer.trace(true) on %d boards\n", boards.length);
+		boolean passed = true;
+		try {
+			for (CircuitBoard board : boards) {
+				int shortest = new DistanceFieldTracer(board).shortestPathLength();
+				for (int clusterSize : new int[] { 2, 3, 4, 8, 16 }) {
+					ArrayList<Point> trace = new HierarchicalTracer(board, clusterSize).trace(true);
+					int length = (trace == null) ? 0 : trace.size();
+					if (length != shortest || (trace != null && !isTrace(board, trace))) {
+						System.out.printf("Cluster size %d: trace of length %d, but the shortest is %d on\n%s", clusterSize,
+								length, shortest, board);
+						passed = false;
+					}
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * @return true if points form a path of open positions from next to the
+	 *         board's '1' to next to its '2'
+	 */
+	private boolean isTrace(CircuitBoard board, ArrayList<Point> points) {
+		Point previous = board.getStartingPoint();
+		for (Point point : points) {
+			if (!board.isOpen(point.x, point.y) || Math.abs(point.x - previous.x) + Math.abs(point.y - previous.y) != 1) {
+				return false;
+			}
+			previous = point;
+		}
+		Point end = board.getEndingPoint();
+		return Math.abs(end.x - previous.x) + Math.abs(end.y - previous.y) == 1;
+	}
+
+	/**
+	 * @return boards read from the valid input files
+	 * @throws FileNotFoundException
+	 */
+	private CircuitBoard[] validBoards() throws FileNotFoundException {
+		CircuitBoard[] boards = new CircuitBoard[VALID_FILENAMES.length];
+		for (int i = 0; i < boards.length; i++) {
+			boards[i] = new CircuitBoard(VALID_FILENAMES[i]);
+		}
+		return boards;
+	}
+
+	/**
+	 * Run CircuitTracer.solve() -j on every valid file and confirm it finds a
+	 * single solution, one of the known solutions of that file, or none when
+	 * the file has none.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testJumpPoint() {
+		totalTests += 1;
+		System.out.printf("Testing CircuitTracer.solve() %s on the valid files\n", JUMP_POINT);
+		boolean passed = true;
+		try {
+			for (int i = 0; i < VALID_FILENAMES.length; i++) {
+				CircuitBoard board = new CircuitBoard(VALID_FILENAMES[i]);
+				char[][][] reported = solutionArrays(CircuitTracer.solve(board, JUMP_POINT, false, false, 1));
+				int expected = Math.min(1, VALID_SOLUTIONS[i].length);
+				if (reported.length != expected || (expected == 1 && !findSolution(reported[0], VALID_SOLUTIONS[i]))) {
+					System.out.printf("%s: expected %d of its known solutions, but found %d solutions\n", VALID_FILENAMES[i],
+							expected, reported.length);
+					passed = false;
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Confirm JumpPointTracer finds a shortest trace by comparing its length
+	 * with the shortest length DistanceFieldTracer finds.
+	 * 
+	 * @param boards boards to trace
+	 * @return true if test passes, else false
+	 */
+	private boolean testJumpPointLength(CircuitBoard[] boards) {
+		totalTests += 1;
+		System.out.printf("Testing JumpPointTracer.tracePath() on %d boards\n", boards.length);
+		boolean passed = true;
+		try {
+			for (CircuitBoard board : boards) {
+				int shortest = new DistanceFieldTracer(board).shortestPathLength();
+				ArrayList<Point> trace = new JumpPointTracer(board).tracePath();
+				int length = (trace == null) ? 0 : trace.size();
+				if (length != shortest || (trace != null && !isTrace(board, trace))) {
+					System.out.printf("Trace of length %d, but the shortest is %d on\n%s", length, shortest, board);
+					passed = false;
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * @return the board of each solution, with its trace marked 'T'
+	 */
+	private char[][][] solutionArrays(ArrayList<TraceState> solutions) {
+		char[][][] arrays = new char[solutions.size()][][];
+		for (int i = 0; i < arrays.length; i++) {
+			CircuitBoard board = solutions.get(i).getBoard();
+			arrays[i] = new char[board.numRows()][board.numCols()];
+			for (int row = 0; row < board.numRows(); row++) {
+				for (int col = 0; col < board.numCols(); col++) {
+					arrays[i][row][col] = board.charAt(row, col);
+				}
+			}
+		}
+		return arrays;
+	}
+
+	//////////////////////////
+	// XXX Board File Tests
+	//////////////////////////
+
+	/**
+	 * Convert each valid file and an open board to a binary board and back
+	 * to text with the BinaryBoard converter, and confirm both files hold the
+	 * original board and the binary file uses the expected encoding.
+	 * 
+	 * @param packed true to convert with -p
+	 * @return true if test passes, else false
+	 */
+	private boolean testBinaryRoundTrip(boolean packed) {
+		totalTests += 1;
+		System.out.printf("Testing BinaryBoard %son the valid files and an open board\n", packed ? "-p " : "");
+		boolean passed = true;
+		try {
+			makeFile(openBoard(60, 80), OPEN_FILENAME);
+			ArrayList<String> filenames = new ArrayList<String>(Arrays.asList(VALID_FILENAMES));
+			filenames.add(OPEN_FILENAME);
+			for (String filename : filenames) {
+				BinaryBoard.main(packed ? new String[] { "-p", filename, BINARY_FILENAME }
+						: new String[] { filename, BINARY_FILENAME });
+				BinaryBoard.main(new String[] { BINARY_FILENAME, CONVERTED_FILENAME });
+				CircuitBoard original = new CircuitBoard(filename);
+				byte encoding = Files.readAllBytes(Paths.get(BINARY_FILENAME))[BINARY_ENCODING_OFFSET];
+				if ((packed && encoding != 0) || (!packed && filename.equals(OPEN_FILENAME) && encoding != 1)) {
+					System.out.printf("%s: written with encoding %d\n", filename, encoding);
+					passed = false;
+				}
+				passed &= sameBoard(filename, original, BoardLoader.load(BINARY_FILENAME));
+				passed &= sameBoard(filename, original, new CircuitBoard(CONVERTED_FILENAME));
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Confirm the CircuitBoard constructor reads binary boards written by
+	 * BinaryBoard as well as text boards, and that no text file, valid or
+	 * invalid, is taken for a binary one.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testBinaryDetection() {
+		totalTests += 1;
+		System.out.printf("Testing CircuitBoard() on binary copies of the valid files\n");
+		boolean passed = true;
+		try {
+			for (String filename : VALID_FILENAMES) {
+				CircuitBoard original = new CircuitBoard(filename);
+				BinaryBoard.write(original, BINARY_FILENAME);
+				if (BinaryBoard.isBinary(filename) || !BinaryBoard.isBinary(BINARY_FILENAME)) {
+					System.out.printf("%s: the text or binary file was not recognized\n", filename);
+					passed = false;
+				}
+				passed &= sameBoard(filename, original, new CircuitBoard(BINARY_FILENAME));
+			}
+			for (String filename : INVALID_FILENAMES) {
+				if (BinaryBoard.isBinary(filename)) {
+					System.out.printf("%s: taken for a binary file\n", filename);
+					passed = false;
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Confirm BinaryBoard.read() refuses a run length encoded board with more
+	 * positions than the limit it is given, and runs that end before or go
+	 * past the last position.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testBinaryLimits() {
+		totalTests += 1;
+		System.out.printf("Testing BinaryBoard.read() on a run length encoded open board\n");
+		boolean passed = true;
+		try {
+			makeFile(openBoard(60, 80), OPEN_FILENAME);
+			BinaryBoard.write(new CircuitBoard(OPEN_FILENAME), BINARY_FILENAME);
+			byte[] contents = Files.readAllBytes(Paths.get(BINARY_FILENAME));
+			byte[] extraRun = Arrays.copyOf(contents, contents.length + 1);
+			extraRun[contents.length] = 1 << 2;		//one more 'O'
+			passed &= readError(contents, 60 * 80, null);
+			passed &= readError(contents, 60 * 80 - 1, BINARY_FILENAME + " has more than " + (60 * 80 - 1) + " positions.");
+			passed &= readError(Arrays.copyOf(contents, contents.length - 1), Long.MAX_VALUE,
+					BINARY_FILENAME + " has too few rows.");
+			passed &= readError(extraRun, Long.MAX_VALUE, BINARY_FILENAME + " has too many rows.");
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * @return true if BinaryBoard.read() of contents with the given limit
+	 *         throws an InvalidFileFormatException with the expected message, a
+	 *         BoardTooLargeException if the message is about the limit, or
+	 *         succeeds if expected is null
+	 */
+	private boolean readError(byte[] contents, long maxPositions, String expected) {
+		String message = null;
+		boolean tooLarge = false;
+		try {
+			BinaryBoard.read(BINARY_FILENAME, ByteBuffer.wrap(contents), maxPositions);
+		} catch (InvalidFileFormatException e) {
+			message = e.getMessage();
+			tooLarge = e instanceof BoardTooLargeException;
+		}
+		boolean same = (expected == null) ? message == null
+				: expected.equals(message) && tooLarge == expected.contains("positions");
+		if (!same) {
+			System.out.printf("With a limit of %d positions: expected \"%s\", but got \"%s\"\n", maxPositions, expected,
+					message);
+		}
+		return same;
+	}
+
+	/**
+	 * Confirm BoardLoader.load() and BoardLoader.parse() read every valid file
+	 * as the CircuitBoard constructor does, and reject every invalid file with
+	 * the same InvalidFileFormatException message.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testLoaderMessages() {
+		totalTests += 1;
+		System.out.printf("Testing BoardLoader on the valid and invalid files\n");
+		boolean passed = true;
+		try {
+			for (String filename : VALID_FILENAMES) {
+				CircuitBoard expected = new CircuitBoard(filename);
+				passed &= sameBoard(filename, expected, BoardLoader.load(filename));
+				passed &= sameBoard(filename, expected, BoardLoader.parse(filename, Files.readAllBytes(Paths.get(filename))));
+			}
+			for (String filename : INVALID_FILENAMES) {
+				String expected = loadError(() -> new CircuitBoard(filename));
+				String loaded = loadError(() -> BoardLoader.load(filename));
+				String parsed = loadError(() -> BoardLoader.parse(filename, Files.readAllBytes(Paths.get(filename))));
+				if (expected == null || !expected.equals(loaded) || !expected.equals(parsed)) {
+					System.out.printf("%s: CircuitBoard() reports \"%s\", BoardLoader.load() \"%s\" and parse() \"%s\"\n",
+							filename, expected, loaded, parsed);
+					passed = false;
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * @return message of the InvalidFileFormatException loading a board
+	 *         throws, or null if it throws none - also used for MultiNetRouter
+	 *         boards
+	 */
+	private String loadError(Callable<?> loader) throws Exception {
+		try {
+			loader.call();
+			return null;
+		} catch (InvalidFileFormatException e) {
+			return e.getMessage();
+		}
+	}
+
+	/**
+	 * @return true if board holds the same positions as expected, printing
+	 *         both if not
+	 */
+	private boolean sameBoard(String filename, CircuitBoard expected, CircuitBoard board) {
+		boolean same = board.numRows() == expected.numRows() && board.numCols() == expected.numCols();
+		for (int row = 0; same && row < board.numRows(); row++) {
+			for (int col = 0; col < board.numCols(); col++) {
+				same &= board.charAt(row, col) == expected.charAt(row, col);
+			}
+		}
+		if (!same) {
+			System.out.printf("%s: expected\n%sbut read\n%s", filename, expected, board);
+		}
+		return same;
+	}
+
+	/**
+	 * @return contents of an open board with '1' in its first position and
+	 *         '2' in its last
+	 */
+	private char[][] openBoard(int rows, int cols) {
+		char[][] contents = new char[rows][cols];
+		for (char[] row : contents) {
+			Arrays.fill(row, 'O');
+		}
+		contents[0][0] = '1';
+		contents[rows - 1][cols - 1] = '2';
+		return contents;
+	}
+
+	//////////////////////////
+	// XXX ResultCache Tests
+	//////////////////////////
+
+	/**
+	 * Cache the solutions of every valid file and confirm they are found
+	 * again, first in memory and then on disk by a new cache on the same
+	 * directory, with every lookup counted as a hit or a miss. valid7.dat and
+	 * valid9.dat hold the same board, so the second is found before it is put.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testCacheHits() {
+		totalTests += 1;
+		System.out.printf("Testing ResultCache.get() after put() on the valid files\n");
+		boolean passed = true;
+		try {
+			Path directory = emptyDirectory(CACHE_DIRECTORY);
+			ResultCache cache = new ResultCache(directory);
+			HashSet<String> boards = new HashSet<String>();
+			for (int i = 0; i < VALID_FILENAMES.length; i++) {
+				CircuitBoard board = new CircuitBoard(VALID_FILENAMES[i]);
+				boolean cached = !boards.add(board.contentHash());
+				if ((cache.get(board) != null) != cached) {
+					System.out.printf("%s: %s before it was put\n", VALID_FILENAMES[i], cached ? "not found" : "found");
+					passed = false;
+				}
+				cache.put(board, CircuitTracer.solve(board, QUEUE, false, false, 1));
+				passed &= sameAsKnown(VALID_FILENAMES[i], cache.get(board), VALID_SOLUTIONS[i]);
+			}
+			ResultCache reopened = new ResultCache(directory);
+			for (int i = 0; i < VALID_FILENAMES.length; i++) {
+				CircuitBoard board = new CircuitBoard(VALID_FILENAMES[i]);
+				passed &= sameAsKnown(VALID_FILENAMES[i], reopened.get(board), VALID_SOLUTIONS[i]);
+				passed &= sameAsKnown(VALID_FILENAMES[i], reopened.get(board), VALID_SOLUTIONS[i]);
+			}
+			int files = VALID_FILENAMES.length;
+			passed &= sameCounts(cache, 2 * files - boards.size(), 0, boards.size());
+			passed &= sameCounts(reopened, 2 * files - boards.size(), boards.size(), 0);
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Fill a cache with no memory tier to one byte less than three results,
+	 * using the first result again before adding the third, and confirm the
+	 * second, least recently used, result is the one evicted.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testCacheEviction() {
+		totalTests += 1;
+		System.out.printf("Testing ResultCache eviction of the least recently used result\n");
+		boolean passed = true;
+		try {
+			int[] files = { 0, 3, 7 };	//valid1, valid4 and valid8, which all have solutions
+			CircuitBoard[] boards = new CircuitBoard[files.length];
+			ArrayList<ArrayList<TraceState>> solutions = new ArrayList<ArrayList<TraceState>>();
+			Path directory = emptyDirectory(CACHE_DIRECTORY);
+			ResultCache unlimited = new ResultCache(directory);
+			for (int i = 0; i < files.length; i++) {
+				boards[i] = new CircuitBoard(VALID_FILENAMES[files[i]]);
+				solutions.add(CircuitTracer.solve(boards[i], QUEUE, false, false, 1));
+				unlimited.put(boards[i], solutions.get(i));
+			}
+			long size = 0;
+			try (DirectoryStream<Path> results = Files.newDirectoryStream(directory)) {
+				for (Path result : results) {
+					size += Files.size(result);
+				}
+			}
+
+			ResultCache cache = new ResultCache(emptyDirectory(CACHE_DIRECTORY), size - 1, 0);
+			cache.put(boards[0], solutions.get(0));
+			Thread.sleep(20);	//so the modified times differ
+			cache.put(boards[1], solutions.get(1));
+			Thread.sleep(20);
+			passed &= sameAsKnown(VALID_FILENAMES[files[0]], cache.get(boards[0]), VALID_SOLUTIONS[files[0]]);
+			Thread.sleep(20);
+			cache.put(boards[2], solutions.get(2));
+			if (cache.get(boards[1]) != null) {
+				System.out.printf("%s: still cached after the directory went over its limit\n", VALID_FILENAMES[files[1]]);
+				passed = false;
+			}
+			passed &= sameAsKnown(VALID_FILENAMES[files[0]], cache.get(boards[0]), VALID_SOLUTIONS[files[0]]);
+			passed &= sameAsKnown(VALID_FILENAMES[files[2]], cache.get(boards[2]), VALID_SOLUTIONS[files[2]]);
+			passed &= sameCounts(cache, 0, 3, 1);
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * @return true if the solutions are the known solutions of the file,
+	 *         printing what was found if not
+	 */
+	private boolean sameAsKnown(String filename, ArrayList<TraceState> solutions, char[][][] known) {
+		if (solutions == null) {
+			System.out.printf("%s: no solutions\n", filename);
+			return false;
+		}
+		char[][][] reported = solutionArrays(solutions);
+		boolean same = reported.length == known.length;
+		for (char[][] solution : reported) {
+			same &= findSolution(solution, known);
+		}
+		if (!same) {
+			System.out.printf("%s: %d solutions, not the %d known ones\n", filename, reported.length, known.length);
+		}
+		return same;
+	}
+
+	/**
+	 * @return true if the cache counted the expected hits and misses
+	 */
+	private boolean sameCounts(ResultCache cache, long memoryHits, long diskHits, long misses) {
+		boolean same = cache.getMemoryHits() == memoryHits && cache.getDiskHits() == diskHits
+				&& cache.getMisses() == misses;
+		if (!same) {
+			System.out.printf("Expected %d memory hits, %d disk hits and %d misses, but %s\n", memoryHits, diskHits,
+					misses, cache);
+		}
+		return same;
+	}
+
+	/**
+	 * @return the directory, created if necessary, with any files in it deleted
+	 * @throws IOException
+	 */
+	private Path emptyDirectory(String name) throws IOException {
+		Path directory = Paths.get(name);
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		return directory;
+	}
+
+	//////////////////////////
+	// XXX BatchTracer Tests
+	//////////////////////////
+
+	/**
+	 * Run BatchTracer -q on the valid files and, through a glob, the invalid
+	 * files. Confirm each valid file's .out holds exactly its known solutions,
+	 * each invalid file's .out holds what CircuitTracer prints for it, and
+	 * the summary reports every board and the totals.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testBatch() {
+		totalTests += 1;
+		System.out.printf("Testing BatchTracer -q on the valid files and invalid*.dat\n");
+		boolean passed = true;
+		try {
+			Path directory = emptyDirectory(BATCH_DIRECTORY);
+			ArrayList<String> args = new ArrayList<String>(Arrays.asList(QUEUE, "-t", "2", "-o", BATCH_DIRECTORY));
+			args.addAll(Arrays.asList(VALID_FILENAMES));
+			args.add("invalid*.dat");
+			captureOutput(() -> BatchTracer.main(args.toArray(new String[0])), BATCH_DIRECTORY + ".out");
+
+			HashMap<String, String[]> summary = new HashMap<String, String[]>();
+			Scanner summaryScan = new Scanner(directory.resolve("summary.txt").toFile());
+			summaryScan.nextLine();		//column headings
+			String totals = null;
+			while (summaryScan.hasNextLine()) {
+				String[] columns = summaryScan.nextLine().trim().split("\\s+");
+				if (columns[1].equals("boards,")) {
+					totals = String.join(" ", columns);
+				} else if (columns.length == 6) {
+					summary.put(Paths.get(columns[0]).getFileName().toString(), columns);
+				}
+			}
+			summaryScan.close();
+
+			int solutions = 0;
+			for (int i = 0; i < VALID_FILENAMES.length; i++) {
+				char[][][] known = VALID_SOLUTIONS[i];
+				int rows = (known.length > 0 ? known[0].length : 0);
+				int cols = (rows > 0 ? known[0][0].length : 0);
+				char[][][] reported = readOutFile(directory.resolve(VALID_FILENAMES[i] + ".out").toFile(), known.length, rows,
+						cols);
+				boolean found = true;
+				for (char[][] solution : known) {
+					found &= findSolution(solution, reported);
+				}
+				String[] expected = { "ok", String.valueOf(known.length), String.valueOf(traceLength(known)) };
+				String[] line = summary.get(VALID_FILENAMES[i]);
+				if (!found || line == null || !Arrays.equals(expected, Arrays.copyOfRange(line, 1, 4))) {
+					System.out.printf("%s: the .out or summary does not match its %d known solutions\n", VALID_FILENAMES[i],
+							known.length);
+					passed = false;
+				}
+				solutions += known.length;
+			}
+			for (String filename : INVALID_FILENAMES) {
+				String[] line = summary.get(filename);
+				String printed = Files.readString(directory.resolve(filename + ".out"));
+				String expected = (line == null) ? null
+						: captureOutput(() -> new CircuitTracer(new String[] { QUEUE, CONSOLE, line[0] }), filename + ".out");
+				if (line == null || !line[1].equals("error") || !printed.equals(expected)) {
+					System.out.printf("%s: reported as\n%sinstead of\n%s", filename, printed, expected);
+					passed = false;
+				}
+			}
+			int boards = VALID_FILENAMES.length + INVALID_FILENAMES.length;
+			String expectedTotals = boards + " boards, " + INVALID_FILENAMES.length + " failed, " + solutions
+					+ " solutions, 2 threads,";
+			if (summary.size() != boards || totals == null || !totals.startsWith(expectedTotals)) {
+				System.out.printf("Summary of %d boards ends with \"%s\" instead of \"%s ...\"\n", summary.size(), totals,
+						expectedTotals);
+				passed = false;
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * @return number of 'T's in the first of the solutions, 0 if there are none
+	 */
+	private int traceLength(char[][][] solutions) {
+		int length = 0;
+		if (solutions.length > 0) {
+			for (char[] row : solutions[0]) {
+				for (char position : row) {
+					length += (position == 'T') ? 1 : 0;
+				}
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Run a program with stdout and stderr redirected to a file.
+	 * 
+	 * @param program  program to run
+	 * @param fileName file for its output
+	 * @return everything the program printed
+	 * @throws IOException
+	 */
+	private String captureOutput(Runnable program, String fileName) throws IOException {
+		PrintStream consoleOut = System.out;
+		PrintStream consoleErr = System.err;
+		try (PrintStream fileOut = new PrintStream(new File(fileName))) {
+			System.setOut(fileOut);
+			System.setErr(fileOut);
+			program.run();
+		} finally {
+			System.setOut(consoleOut);
+			System.setErr(consoleErr);
+		}
+		return Files.readString(Paths.get(fileName));
+	}
+
+	/////////////////////////////
+	// XXX MultiNetRouter Tests
+	/////////////////////////////
+
+	/**
+	 * Route a multi-net board and confirm the length of each net's trace,
+	 * that each trace is a chain of adjacent positions shown with its net
+	 * number, from one terminal to the other, and that no two traces share a
+	 * position.
+	 * 
+	 * @param filename board to route
+	 * @param lengths  expected length of each net's trace without its
+	 *                 terminals, -1 for a net that cannot be routed
+	 * @param ripUps   true if routing must rip up a trace, false if it must not
+	 * @return true if test passes, else false
+	 */
+	private boolean testRoute(String filename, int[] lengths, boolean ripUps) {
+		totalTests += 1;
+		System.out.printf("Testing MultiNetRouter.route() on %s\n", filename);
+		boolean passed = true;
+		try {
+			MultiNetRouter router = new MultiNetRouter(filename);
+			int routed = router.route();
+			String[] positions = router.toString().trim().split("\\s+");
+			int cols = router.toString().split("\n")[0].trim().split("\\s+").length;
+			HashSet<Point> used = new HashSet<Point>();
+			int expectedRouted = 0;
+			for (int net = 1; net <= lengths.length; net++) {
+				ArrayList<Point> route = router.getRoute(net);
+				int length = (route == null) ? -1 : route.size() - 2;
+				if (length != lengths[net - 1] || router.isRouted(net) != (route != null)) {
+					System.out.printf("net %d: length %d instead of %d\n", net, length, lengths[net - 1]);
+					passed = false;
+				}
+				if (route == null) {
+					continue;
+				}
+				expectedRouted++;
+				for (int i = 0; i < route.size(); i++) {
+					Point point = route.get(i);
+					boolean adjacent = (i == 0)
+							|| Math.abs(point.x - route.get(i - 1).x) + Math.abs(point.y - route.get(i - 1).y) == 1;
+					if (!adjacent || !used.add(point) || !positions[point.x * cols + point.y].equals(String.valueOf(net))) {
+						System.out.printf("net %d: trace broken or shared at %s\n%s", net, point, router);
+						passed = false;
+						break;
+					}
+				}
+			}
+			if (routed != expectedRouted || router.numNets() != lengths.length || (router.getRipUps() > 0) != ripUps) {
+				System.out.printf("Routed %d of %d nets with %d rip-ups, expected %d of %d nets\n", routed,
+						router.numNets(), router.getRipUps(), expectedRouted, lengths.length);
+				passed = false;
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/**
+	 * Confirm MultiNetRouter reports each kind of net format error.
+	 * 
+	 * @return true if test passes, else false
+	 */
+	private boolean testNetsErrors() {
+		totalTests += 1;
+		System.out.printf("Testing MultiNetRouter on invalid net boards\n");
+		boolean passed = true;
+		try {
+			for (String[] error : NETS_ERRORS) {
+				makeNetsFile(error[0], NETS_ERROR_FILENAME);
+				String message = loadError(() -> new MultiNetRouter(NETS_ERROR_FILENAME));
+				if (!(NETS_ERROR_FILENAME + error[1]).equals(message)) {
+					System.out.printf("Reported \"%s\" instead of \"%s\" for\n%s", message, NETS_ERROR_FILENAME + error[1],
+							error[0]);
+					passed = false;
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			passed = false;
+		}
+		return passed;
+	}
+
 	//////////////////////////////////////////////////////////
 	// XXX Generate valid and invalid input files for testing
 	//////////////////////////////////////////////////////////
@@ -1029,6 +2193,8 @@ public class CircuitTracerTester {
 		makeFile(INVALID_10, INVALID_10_FILENAME, INVALID_10_ROWCOL);
 		makeFile(INVALID_11, INVALID_11_FILENAME, INVALID_11_ROWCOL);
 		makeFile(INVALID_12, INVALID_12_FILENAME, INVALID_12_ROWCOL);
+		makeNetsFile(NETS_RIP_UP, NETS_RIP_UP_FILENAME);
+		makeNetsFile(NETS_UNROUTABLE, NETS_UNROUTABLE_FILENAME);
 	}
 
 	/**
@@ -1067,6 +2233,17 @@ public class CircuitTracerTester {
 		outFile.close();
 	}
 
+	/**
+	 * Generate a multi-net input file for MultiNetRouter
+	 * 
+	 * @throws FileNotFoundException
+	 */
+	private void makeNetsFile(String contents, String fileName) throws FileNotFoundException {
+		PrintStream outFile = new PrintStream(new File(fileName));
+		outFile.print(contents);
+		outFile.close();
+	}
+
 	///////////////////////////////////////////////
 	// XXX Valid Input File Contents and Solutions
 	///////////////////////////////////////////////
@@ -1245,6 +2422,47 @@ public class CircuitTracerTester {
 			// none
 	};
 
+	private static final String[] VALID_FILENAMES = { VALID_1_FILENAME, VALID_2_FILENAME, VALID_3_FILENAME,
+			VALID_4_FILENAME, VALID_5_FILENAME, VALID_6_FILENAME, VALID_7_FILENAME, VALID_8_FILENAME, VALID_9_FILENAME,
+			VALID_10_FILENAME };
+	private static final char[][][][] VALID_SOLUTIONS = { VALID_1_SOLUTIONS, VALID_2_SOLUTIONS, VALID_3_SOLUTIONS,
+			VALID_4_SOLUTIONS, VALID_5_SOLUTIONS, VALID_6_SOLUTIONS, VALID_7_SOLUTIONS, VALID_8_SOLUTIONS, VALID_9_SOLUTIONS,
+			VALID_10_SOLUTIONS };
+
+	// file for boards generated by randomBoards()
+	private static final String RANDOM_FILENAME = "random.dat";
+
+	// files for the Board File Tests
+	private static final String OPEN_FILENAME = "open.dat";
+	private static final String BINARY_FILENAME = "binary.dat";
+	private static final String CONVERTED_FILENAME = "converted.dat";
+	// index of the encoding byte of a binary board: after the 4 magic bytes and 6 ints
+	private static final int BINARY_ENCODING_OFFSET = 4 + 6 * Integer.BYTES;
+	// output directory for the BatchTracer Tests
+	private static final String BATCH_DIRECTORY = "batch.test";
+	// directory for the ResultCache Tests
+	private static final String CACHE_DIRECTORY = "cache.test";
+
+	// boards for the MultiNetRouter Tests, with the length of each net's trace, -1 if unroutable
+	private static final String NETS_1_FILENAME = "boards/nets1.dat";
+	private static final int[] NETS_1_LENGTHS = { 9, 6, 23, 8, 6, 3 };
+	// net 1 is routed first, straight across net 2's only way through, and must go around the top
+	private static final String NETS_RIP_UP_FILENAME = "netsRipUp.dat";
+	private static final String NETS_RIP_UP = "4 3 2\nO O O\nO 2 O\n1 O 1\nX 2 X\n";
+	private static final int[] NETS_RIP_UP_LENGTHS = { 5, 1 };
+	// net 1's first terminal is walled in
+	private static final String NETS_UNROUTABLE_FILENAME = "netsUnroutable.dat";
+	private static final String NETS_UNROUTABLE = "3 4 2\n1 X 2 O\nX O O O\n1 O 2 O\n";
+	private static final int[] NETS_UNROUTABLE_LENGTHS = { -1, 1 };
+	// invalid net boards and the message for each, after the filename
+	private static final String NETS_ERROR_FILENAME = "netsError.dat";
+	private static final String[][] NETS_ERRORS = {
+			{ "3 4 3\n1 O O 2\nO X X O\n2 O O 1\n", " has fewer than two terminals for net 3." },
+			{ "3 4 1\n1 O O 2\nO X X O\n2 O O 1\n", " has invalid characters." },
+			{ "3 4 2\n1 O O 2\nO X X O\nO O O 1\n", " has fewer than two terminals for net 2." },
+			{ "3 4 2\n1 O O 2\nO X 1 O\n2 O O 1\n", " has more than two terminals for net 1." },
+			{ "3 4 2\n1 O O 2\nO X X O\n", " has too few rows." } };
+
 	//////////////////////////////////
 	// XXX Invalid Input File Contents
 	//////////////////////////////////
@@ -1291,6 +2509,9 @@ public class CircuitTracerTester {
 	private static final String INVALID_12_ROWCOL = "3 3.0";
 	private static final char[][] INVALID_12 = { // row/col double value
 			{ 'O', '1', 'O' }, { 'O', 'O', 'O' }, { 'O', '2', 'O' } };
+	private static final String[] INVALID_FILENAMES = { INVALID_1_FILENAME, INVALID_2_FILENAME, INVALID_3_FILENAME,
+			INVALID_4_FILENAME, INVALID_5_FILENAME, INVALID_6_FILENAME, INVALID_7_FILENAME, INVALID_8_FILENAME,
+			INVALID_9_FILENAME, INVALID_10_FILENAME, INVALID_11_FILENAME, INVALID_12_FILENAME };
 
 	/** Indicates invalid output format from CircuitTracer */
 	private class InvalidOutputException extends IOException {
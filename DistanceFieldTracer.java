@@ -0,0 +1,466 @@
+import java.awt.*;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Finds every shortest trace on a CircuitBoard without an exhaustive search.
+ * One breadth-first search from the '1' and one from the '2' give each open
+ * position its distance from both components. A position lies on a shortest
+ * trace exactly when its two distances add up to the shortest trace length
+ * plus one, so walking only those positions, one step further from the '1'
+ * each time, produces every shortest trace and nothing else. The same walk,
+ * done as a dynamic program over the positions in order of distance, counts
+ * the shortest traces without building any of them.
+ *
+ * The distance fields can also be kept up to date while the board is edited.
+ * setOpen() opens or blocks one position and repairs only the distances the
+ * change affects, so after a small edit the new shortest traces are ready
+ * without searching the whole board again.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class DistanceFieldTracer {
+    /**
+     * marks a position that cannot be reached from a component
+     */
+    private static final int UNREACHED = -1;
+
+    private final CircuitBoard board;
+    private final int ROWS;
+    private final int COLS;
+    /**
+     * distance of each open position from '1', indexed by row * COLS + col
+     */
+    private final int[] fromStart;
+    /**
+     * distance of each open position from '2', indexed by row * COLS + col
+     */
+    private final int[] fromEnd;
+    /**
+     * number of positions in a shortest trace, or 0 if there is no trace
+     */
+    private int shortestLength;
+
+    //buffers for setOpen(), allocated by its first call
+    /**
+     * positions waiting to be checked or updated
+     */
+    private int[] queue;
+    /**
+     * positions whose distances a blocked position invalidated
+     */
+    private int[] affected;
+    /**
+     * number of the setOpen() pass that last queued each position
+     */
+    private int[] queued;
+    private int pass = 0;
+
+    /**
+     * Build the distance fields for the given board.
+     *
+     * @param board board to trace
+     */
+    public DistanceFieldTracer(CircuitBoard board) {
+        this.board = board;
+        ROWS = board.numRows();
+        COLS = board.numCols();
+        fromStart = distancesFrom(board.getStartingPoint());
+        fromEnd = distancesFrom(board.getEndingPoint());
+        shortestLength = findShortestLength();
+    }
+
+    /**
+     * @return number of positions in a shortest trace according to fromStart, or 0 if there is no trace
+     */
+    private int findShortestLength() {
+        int shortest = 0;
+        Point end = board.getEndingPoint();
+        for (int i = -1; i <= 1; i += 2) {  //the trace ends on an open position next to '2'
+            shortest = closer(shortest, end.x + i, end.y);
+            shortest = closer(shortest, end.x, end.y + i);
+        }
+        return shortest;
+    }
+
+    /**
+     * Breadth-first search over the open positions next to the given component.
+     *
+     * @param component position of '1' or '2'
+     * @return distance of every open position from component, UNREACHED if there is no path
+     */
+    private int[] distancesFrom(Point component) {
+        int[] distance = new int[ROWS * COLS];
+        Arrays.fill(distance, UNREACHED);
+        int[] queue = new int[ROWS * COLS];
+        int head = 0;
+        int tail = 0;
+        for (int i = -1; i <= 1; i += 2) {  //positions next to the component are one step away
+            tail = visit(distance, queue, tail, component.x + i, component.y, 1);
+            tail = visit(distance, queue, tail, component.x, component.y + i, 1);
+        }
+        while (head < tail) {
+            int index = queue[head++];
+            int row = index / COLS;
+            int col = index % COLS;
+            for (int i = -1; i <= 1; i += 2) {
+                tail = visit(distance, queue, tail, row + i, col, distance[index] + 1);
+                tail = visit(distance, queue, tail, row, col + i, distance[index] + 1);
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Record a distance for an open, unvisited position and add it to the queue.
+     *
+     * @return new tail of the queue
+     */
+    private int visit(int[] distance, int[] queue, int tail, int row, int col, int steps) {
+        if (board.isOpen(row, col) && distance[row * COLS + col] == UNREACHED) {
+            distance[row * COLS + col] = steps;
+            queue[tail++] = row * COLS + col;
+        }
+        return tail;
+    }
+
+    /**
+     * @return the shorter of shortest and the distance from '1' to (row, col), ignoring 0 and unreachable
+     */
+    private int closer(int shortest, int row, int col) {
+        if (!board.isOpen(row, col) || fromStart[row * COLS + col] == UNREACHED) {
+            return shortest;
+        }
+        int length = fromStart[row * COLS + col];
+        return (shortest == 0 || length < shortest) ? length : shortest;
+    }
+
+    /**
+     * Open or block one position of the board, then update both distance
+     * fields to match, visiting only the positions whose distances change.
+     * The board passed to the constructor is edited too. Traces already
+     * returned are not affected, since each TraceState keeps its own copy of
+     * the board it started from.
+     *
+     * @param row  row coordinate
+     * @param col  col coordinate
+     * @param open true to make the position 'O', false to make it 'X'
+     * @throws OccupiedPositionException if the position holds a component or a trace
+     */
+    public void setOpen(int row, int col, boolean open) {
+        if (board.isOpen(row, col) == open) {
+            board.setOpen(row, col, open);  //checks the position even when nothing changes
+            return;
+        }
+        board.setOpen(row, col, open);
+        if (queue == null) {
+            queue = new int[ROWS * COLS];
+            affected = new int[ROWS * COLS];
+            queued = new int[ROWS * COLS];
+        }
+        int index = row * COLS + col;
+        if (open) {
+            opened(fromStart, board.getStartingPoint(), index);
+            opened(fromEnd, board.getEndingPoint(), index);
+        } else {
+            blocked(fromStart, board.getStartingPoint(), index);
+            blocked(fromEnd, board.getEndingPoint(), index);
+        }
+        shortestLength = findShortestLength();
+    }
+
+    /**
+     * Update a distance field after a position was opened. Distances can only
+     * get shorter, and only through the new position, so a breadth-first
+     * search from it that stops wherever it brings no improvement visits
+     * exactly the positions that change.
+     *
+     * @param distance  distance field to update
+     * @param component position of '1' or '2' the field measures from
+     * @param index     position that was opened
+     */
+    private void opened(int[] distance, Point component, int index) {
+        int row = index / COLS;
+        int col = index % COLS;
+        int steps = UNREACHED;
+        if (Math.abs(row - component.x) + Math.abs(col - component.y) == 1) {
+            steps = 1;
+        } else {
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = neighbor(row, col, direction);
+                if (neighbor >= 0 && distance[neighbor] != UNREACHED && (steps == UNREACHED || distance[neighbor] + 1 < steps)) {
+                    steps = distance[neighbor] + 1;
+                }
+            }
+        }
+        distance[index] = steps;
+        if (steps == UNREACHED) {
+            return;
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = index;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = neighbor(current / COLS, current % COLS, direction);
+                if (neighbor >= 0 && (distance[neighbor] == UNREACHED || distance[neighbor] > distance[current] + 1)) {
+                    distance[neighbor] = distance[current] + 1;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * Update a distance field after a position was blocked. Distances can
+     * only get longer, and only for positions whose every shortest way to the
+     * component went through the blocked position. Those are found first,
+     * one distance at a time: a position is affected if none of its
+     * neighbors one step closer is unaffected. Each affected position then
+     * starts from one more than its closest unaffected neighbor, and the
+     * affected positions are settled cheapest first, the way a breadth-first
+     * search from several starting distances would.
+     *
+     * @param distance  distance field to update
+     * @param component position of '1' or '2' the field measures from
+     * @param index     position that was blocked
+     */
+    private void blocked(int[] distance, Point component, int index) {
+        int old = distance[index];
+        distance[index] = UNREACHED;
+        if (old == UNREACHED) {
+            return;
+        }
+        pass++;
+        int head = 0;
+        int tail = 0;
+        int count = 0;
+        tail = queueNext(distance, index / COLS, index % COLS, old + 1, tail);
+        while (head < tail) {   //positions come out in order of distance, so every closer neighbor is decided
+            int current = queue[head++];
+            int steps = distance[current];
+            boolean supported = false;
+            for (int direction = 0; direction < 4 && !supported; direction++) {
+                int neighbor = neighbor(current / COLS, current % COLS, direction);
+                supported = neighbor >= 0 && distance[neighbor] == steps - 1;
+            }
+            if (!supported) {
+                affected[count++] = current;
+                distance[current] = UNREACHED;
+                tail = queueNext(distance, current / COLS, current % COLS, steps + 1, tail);
+            }
+        }
+
+        long[] starts = new long[count];    //(distance, position) of each affected position with an unaffected neighbor
+        int startCount = 0;
+        for (int i = 0; i < count; i++) {
+            int current = affected[i];
+            int steps = UNREACHED;
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = neighbor(current / COLS, current % COLS, direction);
+                if (neighbor >= 0 && distance[neighbor] != UNREACHED && (steps == UNREACHED || distance[neighbor] + 1 < steps)) {
+                    steps = distance[neighbor] + 1;
+                }
+            }
+            if (steps != UNREACHED) {
+                distance[current] = steps;
+                starts[startCount++] = ((long) steps << 32) | current;
+            }
+        }
+        Arrays.sort(starts, 0, startCount);
+        head = 0;
+        tail = 0;
+        int next = 0;
+        while (next < startCount || head < tail) {
+            int current;
+            if (head < tail && (next == startCount || distance[queue[head]] <= (int) (starts[next] >>> 32))) {
+                current = queue[head++];
+            } else {
+                current = (int) starts[next];
+                if (distance[current] < (int) (starts[next++] >>> 32)) {  //already reached by a shorter way
+                    continue;
+                }
+            }
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = neighbor(current / COLS, current % COLS, direction);
+                if (neighbor >= 0 && queued[neighbor] == pass
+                        && (distance[neighbor] == UNREACHED || distance[neighbor] > distance[current] + 1)) {
+                    distance[neighbor] = distance[current] + 1;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue the neighbors of (row, col) at the given distance that have not
+     * been queued in this pass.
+     *
+     * @return new tail of the queue
+     */
+    private int queueNext(int[] distance, int row, int col, int steps, int tail) {
+        for (int direction = 0; direction < 4; direction++) {
+            int neighbor = neighbor(row, col, direction);
+            if (neighbor >= 0 && distance[neighbor] == steps && queued[neighbor] != pass) {
+                queued[neighbor] = pass;
+                queue[tail++] = neighbor;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * @param direction 0 to 3 for up, down, left and right
+     * @return index of the open neighbor of (row, col) in that direction, -1 if it is off the board or not open
+     */
+    private int neighbor(int row, int col, int direction) {
+        row += (direction == 0) ? -1 : (direction == 1) ? 1 : 0;
+        col += (direction == 2) ? -1 : (direction == 3) ? 1 : 0;
+        return board.isOpen(row, col) ? row * COLS + col : -1;
+    }
+
+    /**
+     * @return number of positions in a shortest trace, or 0 if '1' cannot be connected to '2'
+     */
+    public int shortestPathLength() {
+        return shortestLength;
+    }
+
+    /**
+     * Return whether the given position is part of at least one shortest trace.
+     *
+     * @param row row coordinate
+     * @param col col coordinate
+     * @return true if (row, col) lies on some shortest trace
+     */
+    public boolean isOnShortestPath(int row, int col) {
+        if (shortestLength == 0 || !board.isOpen(row, col)) {
+            return false;
+        }
+        int index = row * COLS + col;
+        return fromStart[index] != UNREACHED && fromEnd[index] != UNREACHED
+                && fromStart[index] + fromEnd[index] == shortestLength + 1;
+    }
+
+    /**
+     * Walk the positions on shortest traces from '1' towards '2' to build every
+     * shortest trace. Each step moves to a neighbor one step further from '1',
+     * so every walk that reaches the shortest length is a solution.
+     *
+     * @return all shortest traces, empty if there are none
+     */
+    public ArrayList<TraceState> getShortestPaths() {
+        ArrayList<TraceState> bestPaths = new ArrayList<TraceState>();
+        forEachShortestPath(bestPaths::add);
+        return bestPaths;
+    }
+
+    /**
+     * Same walk as getShortestPaths(), handing each shortest trace to action
+     * as soon as it is built instead of collecting them all.
+     *
+     * @param action receives every shortest trace, never called if there are none
+     */
+    public void forEachShortestPath(Consumer<? super TraceState> action) {
+        if (shortestLength == 0) {
+            return;
+        }
+        Storage<TraceState> stateStore = new Storage<TraceState>(Storage.DataStructure.arrayStack);
+        Point start = board.getStartingPoint();
+        for (int i = -1; i <= 1; i += 2) {  //create initial TraceStates
+            if (isOnShortestPath(start.x + i, start.y)) {
+                stateStore.store(new TraceState(board, start.x + i, start.y));
+            }
+            if (isOnShortestPath(start.x, start.y + i)) {
+                stateStore.store(new TraceState(board, start.x, start.y + i));
+            }
+        }
+        while (!stateStore.isEmpty()) {
+            TraceState current = stateStore.retrieve();
+            if (current.pathLength() == shortestLength) {
+                action.accept(current);
+                continue;
+            }
+            int row = current.getRow();
+            int col = current.getCol();
+            for (int i = -1; i <= 1; i += 2) {
+                if (isNextStep(current, row + i, col)) {
+                    stateStore.store(new TraceState(current, row + i, col));
+                }
+                if (isNextStep(current, row, col + i)) {
+                    stateStore.store(new TraceState(current, row, col + i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the shortest traces without building them. Positions on shortest
+     * traces are visited breadth-first from '1', so every position is reached
+     * after all of its neighbors one step closer to '1'. Each position passes
+     * its count of trace beginnings on to its neighbors one step further, and
+     * the counts at the positions next to '2' add up to the total.
+     *
+     * @return exact number of shortest traces, 0 if there are none
+     */
+    public BigInteger countShortestPaths() {
+        BigInteger total = BigInteger.ZERO;
+        if (shortestLength == 0) {
+            return total;
+        }
+        BigInteger[] ways = new BigInteger[ROWS * COLS];
+        int[] queue = new int[ROWS * COLS];
+        int head = 0;
+        int tail = 0;
+        Point start = board.getStartingPoint();
+        for (int i = -1; i <= 1; i += 2) {  //each first step begins one trace
+            tail = addWays(ways, queue, tail, start.x + i, start.y, 1, BigInteger.ONE);
+            tail = addWays(ways, queue, tail, start.x, start.y + i, 1, BigInteger.ONE);
+        }
+        while (head < tail) {
+            int index = queue[head++];
+            int row = index / COLS;
+            int col = index % COLS;
+            if (fromStart[index] == shortestLength) {
+                total = total.add(ways[index]);
+                continue;
+            }
+            for (int i = -1; i <= 1; i += 2) {
+                tail = addWays(ways, queue, tail, row + i, col, fromStart[index] + 1, ways[index]);
+                tail = addWays(ways, queue, tail, row, col + i, fromStart[index] + 1, ways[index]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Add count to the ways of reaching (row, col) if it is on a shortest trace
+     * at the given distance from '1', queueing it the first time it is reached.
+     *
+     * @return new tail of the queue
+     */
+    private int addWays(BigInteger[] ways, int[] queue, int tail, int row, int col, int distance, BigInteger count) {
+        if (!isOnShortestPath(row, col) || fromStart[row * COLS + col] != distance) {
+            return tail;
+        }
+        int index = row * COLS + col;
+        if (ways[index] == null) {
+            ways[index] = count;
+            queue[tail++] = index;
+        } else {
+            ways[index] = ways[index].add(count);
+        }
+        return tail;
+    }
+
+    /**
+     * @return true if (row, col) continues current along a shortest trace
+     */
+    private boolean isNextStep(TraceState current, int row, int col) {
+        return isOnShortestPath(row, col) && fromStart[row * COLS + col] == current.pathLength() + 1;
+    }
+
+} // class DistanceFieldTracer
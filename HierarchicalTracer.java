@@ -0,0 +1,1010 @@
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Finds a short trace on a very large board without searching the whole
+ * board, by planning over a coarse graph first and filling in the details
+ * afterwards, in the manner of hierarchical path-finding (HPA*).
+ *
+ * The board is split into square clusters. Wherever two neighboring
+ * clusters have open positions facing each other across their border,
+ * those positions form an entrance, and one pair of facing positions in the
+ * middle of the entrance, or one at each end of a long entrance, becomes a
+ * pair of transition nodes. Inside a cluster, the shortest distance between
+ * each pair of its nodes is found with a breadth-first search of just that
+ * cluster. Entrances are found for the whole board up front; the distances
+ * from a node to the rest of its cluster are found the first time the search
+ * expands that node and kept for later traces, so a trace only searches
+ * inside the clusters along its way.
+ *
+ * A trace is found with an A* search over the nodes, from the clusters next
+ * to '1' to the clusters next to '2', and then refined into positions one
+ * cluster at a time. A fast trace comes from a search that heads straight
+ * for '2', and may be a few percent longer than the shortest. An exact
+ * trace comes from the shortest path through the nodes, which can only be
+ * longer than the shortest trace because it crosses cluster borders at
+ * transition nodes; a breadth-first search over just the corridor of
+ * clusters it passes through, and their neighbors, then removes those
+ * detours. Wherever a trace leaving the corridor could still be shorter
+ * than the one found inside it, judged by the Manhattan distance left from
+ * the first position outside, the corridor is widened there and searched
+ * again, so an exact trace is always a shortest trace.
+ *
+ * To RUN: java HierarchicalTracer [-e] [-v] [-k cluster size] [-o output file] board
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class HierarchicalTracer {
+    public static final int DEFAULT_CLUSTER_SIZE = 32;
+    /**
+     * largest cluster size, so distances inside a cluster fit in a char
+     */
+    public static final int MAX_CLUSTER_SIZE = 255;
+    /**
+     * entrances at least this long get a transition at each end instead of one in the middle
+     */
+    private static final int SPLIT_ENTRANCE = 6;
+    /**
+     * a search for a fast trace estimates the rest of a trace at 1 / FAST_MARGIN more than the fewest positions it can need
+     */
+    private static final int FAST_MARGIN = 16;
+    /**
+     * distance between two nodes of a cluster with no path between them inside it
+     */
+    private static final char NO_PATH = Character.MAX_VALUE;
+    //parents of the first node of an abstract path and of a trace that never leaves the clusters next to '1'
+    private static final int FROM_START = -1;
+    private static final int DIRECT = -2;
+    //row and column change of each step direction: up, down, left, right
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+
+    private final CircuitBoard board;
+    private final int ROWS;
+    private final int COLS;
+    private final int SIZE;
+    private final int CLUSTER_ROWS;
+    private final int CLUSTER_COLS;
+
+    /**
+     * (cluster << 32 | position within the cluster) of each node, sorted, so nodes of a cluster are consecutive
+     */
+    private final long[] nodeKey;
+    /**
+     * first node of each cluster, with one extra entry for the end of the last cluster
+     */
+    private final int[] nodeStart;
+    /**
+     * up to two nodes of neighboring clusters each node faces across a border, -1 for none
+     */
+    private final int[] across;
+    /**
+     * distances from each node to each node of its cluster, or null until the node is first expanded
+     */
+    private final char[][] inside;
+    private int clusterSearches = 0;
+
+    //abstract search, with the goal as the node after the last real node
+    private final int[] cost;
+    private final int[] parent;
+    /**
+     * number of the search that last set each node's cost
+     */
+    private final int[] searched;
+    /**
+     * number of positions from the last position of a trace back to each node, for nodes near '2'
+     */
+    private final int[] toGoal;
+    /**
+     * number of the search that last set each node's toGoal
+     */
+    private final int[] nearGoal;
+    private int searchNumber = 0;
+    /**
+     * priority queue of the search, (estimated trace length << 32 | Integer.MAX_VALUE - cost) of each entry,
+     * so that of nodes with the same estimate, the one furthest along is expanded first
+     */
+    private long[] heap = new long[64];
+    /**
+     * node of each entry in heap
+     */
+    private int[] heapNode = new int[64];
+    private int heapSize = 0;
+    private int nodesExpanded = 0;
+    /**
+     * FAST_MARGIN for a fast trace, 0 for an exact one - see estimate()
+     */
+    private int margin;
+    /**
+     * cluster holding the whole trace when the goal's parent is DIRECT
+     */
+    private int directCluster;
+
+    //breadth-first search of one cluster, indexed by row * SIZE + col within the cluster
+    private final int[] distance;
+    private final int[] previous;
+    private final int[] reached;
+    private final int[] queue;
+    private int exploreNumber = 0;
+    /**
+     * which positions of openCluster are open, false past the edge of the board
+     */
+    private final boolean[] open;
+    private int openCluster = -1;
+
+    /**
+     * Trace a board from the command line and report how long the trace is
+     * and how close it is to the shortest.
+     *
+     * @param args options, then the board file
+     */
+    public static void main(String[] args) {
+        boolean exact = false;
+        boolean verify = false;
+        int clusterSize = DEFAULT_CLUSTER_SIZE;
+        String output = null;
+        try {
+            for (int i = 0; i < args.length - 1; i++) {
+                switch (args[i]) {
+                    case "-e":
+                        exact = true;
+                        break;
+                    case "-v":
+                        verify = true;
+                        break;
+                    case "-k":
+                        clusterSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "-o":
+                        output = args[++i];
+                        break;
+                    default:
+                        printUsage();
+                        return;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            printUsage();
+            return;
+        }
+        if (args.length == 0 || args[args.length - 1].startsWith("-") || clusterSize < 2 || clusterSize > MAX_CLUSTER_SIZE) {
+            printUsage();
+            return;
+        }
+        try {
+            CircuitBoard board = BoardLoader.load(args[args.length - 1]);
+            long begin = System.nanoTime();
+            HierarchicalTracer tracer = new HierarchicalTracer(board, clusterSize);
+            long built = System.nanoTime();
+            ArrayList<Point> trace = tracer.trace(exact);
+            long traced = System.nanoTime();
+            System.out.println("Clusters: " + tracer.CLUSTER_ROWS + " x " + tracer.CLUSTER_COLS + " of " + clusterSize + " x " + clusterSize
+                    + " positions, " + tracer.numNodes() + " transition nodes, found in " + (built - begin) / 1_000_000 + " ms");
+            System.out.println("Search: " +  tracer.getNodesExpanded() + " nodes expanded, " + tracer.getClusterSearches()
+                    + " searches inside clusters, " + (traced - built) / 1_000_000 + " ms");
+            if (trace == null) {
+                System.out.println("No trace connects 1 and 2.");
+                return;
+            }
+            System.out.println("Trace length: " + trace.size() + (exact ? " (shortest)" : " (fast)"));
+            Point start = board.getStartingPoint();
+            Point end = board.getEndingPoint();
+            if (verify) {
+                long searching = System.nanoTime();
+                int shortest = tracer.shortestLength(start, end);
+                System.out.println("Shortest trace: " + shortest + ", so this trace is " + (trace.size() - shortest) + " positions ("
+                        + percentLonger(trace.size(), shortest) + ") longer; full search took " + (System.nanoTime() - searching) / 1_000_000 + " ms");
+            } else {
+                int bound = Math.max(1, Math.abs(start.x - end.x) + Math.abs(start.y - end.y) - 1);
+                System.out.println("Shortest trace: at least " + bound + ", so this trace is at most " + percentLonger(trace.size(), bound)
+                        + " longer (-v to find the shortest)");
+            }
+            if (output != null) {
+                CircuitBoard solved = new CircuitBoard(board);
+                for (Point p : trace) {
+                    solved.makeTrace(p.x, p.y);
+                }
+                if (output.endsWith(".ctb")) {
+                    BinaryBoard.write(solved, output);
+                } else {
+                    BinaryBoard.writeText(solved, output);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println(CircuitTracer.errorMessage(e));
+        }
+    }
+
+    /**
+     * Print instructions for running HierarchicalTracer from the command line.
+     */
+    private static void printUsage() {
+        System.out.println("To USE: java HierarchicalTracer [options] board");
+        System.out.println("options: -e find the shortest trace, by refining the shortest trace through the clusters' nodes,");
+        System.out.println("         -v also search the whole board for the shortest trace to compare with,");
+        System.out.println("         -k <size> rows and columns of each cluster, 2 to " + MAX_CLUSTER_SIZE + " (default: " + DEFAULT_CLUSTER_SIZE + "),");
+        System.out.println("         -o <file> write the board with the trace, as a binary board if the name ends in .ctb.");
+        System.out.println("EXAMPLE: java HierarchicalTracer -e -v ./boards/valid8.dat");
+    }
+
+    /**
+     * @return how much longer length is than shortest, as a percentage
+     */
+    private static String percentLonger(int length, int shortest) {
+        return String.format("%.2f%%", 100.0 * (length - shortest) / shortest);
+    }
+
+    /**
+     * Find the entrances of a board with clusters of the default size.
+     *
+     * @param board board to trace, which should not change while this is in use
+     */
+    public HierarchicalTracer(CircuitBoard board) {
+        this(board, DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Find the entrances of a board.
+     *
+     * @param board       board to trace, which should not change while this is in use
+     * @param clusterSize number of rows and columns in each cluster, from 2 to MAX_CLUSTER_SIZE
+     * @throws IllegalArgumentException if clusterSize is out of range
+     */
+    public HierarchicalTracer(CircuitBoard board, int clusterSize) {
+        if (clusterSize < 2 || clusterSize > MAX_CLUSTER_SIZE) {
+            throw new IllegalArgumentException("cluster size " + clusterSize + " is not between 2 and " + MAX_CLUSTER_SIZE);
+        }
+        this.board = board;
+        ROWS = board.numRows();
+        COLS = board.numCols();
+        SIZE = clusterSize;
+        CLUSTER_ROWS = (ROWS + SIZE - 1) / SIZE;
+        CLUSTER_COLS = (COLS + SIZE - 1) / SIZE;
+
+        //each transition is a pair of facing positions, kept as four ints: row and col on each side
+        int[] transitions = new int[64];
+        int count = 0;
+        for (int row = SIZE; row < ROWS; row += SIZE) {     //borders between a row of clusters and the row below
+            for (int left = 0; left < COLS; left += SIZE) {
+                int right = Math.min(left + SIZE, COLS);
+                int runStart = -1;
+                for (int col = left; col <= right; col++) {
+                    if (col < right && board.isOpen(row - 1, col) && board.isOpen(row, col)) {
+                        runStart = (runStart < 0) ? col : runStart;
+                    } else if (runStart >= 0) {
+                        for (int at : transitionsOf(runStart, col - 1)) {
+                            transitions = add(transitions, count++, row - 1, at, row, at);
+                        }
+                        runStart = -1;
+                    }
+                }
+            }
+        }
+        for (int col = SIZE; col < COLS; col += SIZE) {     //borders between a column of clusters and the column to the right
+            for (int top = 0; top < ROWS; top += SIZE) {
+                int bottom = Math.min(top + SIZE, ROWS);
+                int runStart = -1;
+                for (int row = top; row <= bottom; row++) {
+                    if (row < bottom && board.isOpen(row, col - 1) && board.isOpen(row, col)) {
+                        runStart = (runStart < 0) ? row : runStart;
+                    } else if (runStart >= 0) {
+                        for (int at : transitionsOf(runStart, row - 1)) {
+                            transitions = add(transitions, count++, at, col - 1, at, col);
+                        }
+                        runStart = -1;
+                    }
+                }
+            }
+        }
+
+        long[] keys = new long[count * 2];
+        for (int i = 0; i < count; i++) {
+            keys[i * 2] = key(transitions[i * 4], transitions[i * 4 + 1]);
+            keys[i * 2 + 1] = key(transitions[i * 4 + 2], transitions[i * 4 + 3]);
+        }
+        Arrays.sort(keys);
+        int nodes = 0;
+        for (int i = 0; i < keys.length; i++) {     //a position at the corner of a cluster can be in two transitions
+            if (nodes == 0 || keys[i] != keys[nodes - 1]) {
+                keys[nodes++] = keys[i];
+            }
+        }
+        nodeKey = Arrays.copyOf(keys, nodes);
+        nodeStart = new int[CLUSTER_ROWS * CLUSTER_COLS + 1];
+        for (long key : nodeKey) {
+            nodeStart[(int) (key >>> 32) + 1]++;
+        }
+        for (int cluster = 0; cluster < CLUSTER_ROWS * CLUSTER_COLS; cluster++) {
+            nodeStart[cluster + 1] += nodeStart[cluster];
+        }
+        across = new int[nodes * 2];
+        Arrays.fill(across, -1);
+        for (int i = 0; i < count; i++) {
+            int a = node(key(transitions[i * 4], transitions[i * 4 + 1]));
+            int b = node(key(transitions[i * 4 + 2], transitions[i * 4 + 3]));
+            across[(across[a * 2] < 0) ? a * 2 : a * 2 + 1] = b;
+            across[(across[b * 2] < 0) ? b * 2 : b * 2 + 1] = a;
+        }
+        inside = new char[nodes][];
+
+        cost = new int[nodes + 1];
+        parent = new int[nodes + 1];
+        searched = new int[nodes + 1];
+        toGoal = new int[nodes];
+        nearGoal = new int[nodes];
+        distance = new int[SIZE * SIZE];
+        previous = new int[SIZE * SIZE];
+        reached = new int[SIZE * SIZE];
+        queue = new int[SIZE * SIZE];
+        open = new boolean[SIZE * SIZE];
+    }
+
+    /**
+     * @return columns (or rows) of the transitions for an entrance from first to last
+     */
+    private static int[] transitionsOf(int first, int last) {
+        if (last - first + 1 < SPLIT_ENTRANCE) {
+            return new int[]{(first + last) / 2};
+        }
+        return new int[]{first, last};
+    }
+
+    /**
+     * Store one transition, growing the array as needed.
+     *
+     * @return the array holding the transitions
+     */
+    private static int[] add(int[] transitions, int index, int rowA, int colA, int rowB, int colB) {
+        if (transitions.length < (index + 1) * 4) {
+            transitions = Arrays.copyOf(transitions, transitions.length * 2);
+        }
+        transitions[index * 4] = rowA;
+        transitions[index * 4 + 1] = colA;
+        transitions[index * 4 + 2] = rowB;
+        transitions[index * 4 + 3] = colB;
+        return transitions;
+    }
+
+    /**
+     * Find the distances inside every cluster now rather than as traces
+     * reach them, for a tracer that will answer many traces.
+     */
+    public void precompute() {
+        for (int node = 0; node < inside.length; node++) {
+            distancesInside(node);
+        }
+    }
+
+    /**
+     * Find a trace between the board's '1' and '2'.
+     *
+     * @param exact false for a fast trace, true for a shortest trace
+     * @return positions of the trace in order from '1' to '2', or null if they cannot be connected
+     */
+    public ArrayList<Point> trace(boolean exact) {
+        return trace(board.getStartingPoint(), board.getEndingPoint(), exact);
+    }
+
+    /**
+     * Find a trace between any two positions of the board. The trace runs
+     * over open positions from one next to start to one next to end.
+     *
+     * @param start position the trace starts next to
+     * @param end   position the trace ends next to
+     * @param exact false for a fast trace, true for a shortest trace
+     * @return positions of the trace in order, not including start and end, or null if there is no trace
+     */
+    public ArrayList<Point> trace(Point start, Point end, boolean exact) {
+        searchNumber++;
+        nodesExpanded = 0;
+        margin = exact ? 0 : FAST_MARGIN;
+        heapSize = 0;
+        int goal = nodeKey.length;
+        int[] seeds = new int[4];
+
+        for (int cluster : clustersNextTo(end)) {   //how far each node near '2' is from the end of the trace
+            explore(cluster, seeds, seedsNextTo(end, cluster, seeds), 1);
+            for (int node = nodeStart[cluster]; node < nodeStart[cluster + 1]; node++) {
+                int local = (int) nodeKey[node];
+                if (reached[local] == exploreNumber && (nearGoal[node] != searchNumber || distance[local] < toGoal[node])) {
+                    nearGoal[node] = searchNumber;
+                    toGoal[node] = distance[local];
+                }
+            }
+        }
+        for (int cluster : clustersNextTo(start)) {
+            explore(cluster, seeds, seedsNextTo(start, cluster, seeds), 1);
+            for (int node = nodeStart[cluster]; node < nodeStart[cluster + 1]; node++) {
+                int local = (int) nodeKey[node];
+                if (reached[local] == exploreNumber) {
+                    relax(node, distance[local], FROM_START, end);
+                }
+            }
+            int count = seedsNextTo(end, cluster, seeds);
+            for (int i = 0; i < count; i++) {   //the trace may never need to leave this cluster
+                if (reached[seeds[i]] == exploreNumber && relax(goal, distance[seeds[i]], DIRECT, end)) {
+                    directCluster = cluster;
+                }
+            }
+        }
+
+        while (heapSize > 0) {
+            long top = heap[0];
+            int node = heapNode[0];
+            heapSize--;
+            siftDown(heap[heapSize], heapNode[heapSize]);
+            if (node == goal) {
+                ArrayList<Point> trace = refine(start, end);
+                return exact ? refineInCorridor(trace, start, end) : trace;
+            }
+            if (Integer.MAX_VALUE - (int) top != cost[node]) {
+                continue;   //already expanded at a lower cost
+            }
+            nodesExpanded++;
+            int cluster = (int) (nodeKey[node] >>> 32);
+            int first = nodeStart[cluster];
+            int count = nodeStart[cluster + 1] - first;
+            char[] distances = distancesInside(node);
+            for (int other = 0; other < count; other++) {
+                char steps = distances[other];
+                if (steps != NO_PATH && other != node - first) {
+                    relax(first + other, cost[node] + steps, node, end);
+                }
+            }
+            for (int i = node * 2; i < node * 2 + 2 && across[i] >= 0; i++) {
+                relax(across[i], cost[node] + 1, node, end);
+            }
+            if (nearGoal[node] == searchNumber) {
+                relax(goal, cost[node] + toGoal[node] - 1, node, end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set a node's cost and parent if this is the cheapest way to it so far,
+     * and queue it for the search.
+     *
+     * @return true if the cost was lowered
+     */
+    private boolean relax(int node, int newCost, int from, Point end) {
+        if (searched[node] == searchNumber && newCost >= cost[node]) {
+            return false;
+        }
+        searched[node] = searchNumber;
+        cost[node] = newCost;
+        parent[node] = from;
+        push(((long) (newCost + estimate(node, end)) << 32) | (Integer.MAX_VALUE - newCost), node);
+        return true;
+    }
+
+    /**
+     * Estimate how many more positions a trace through node needs after it.
+     * An exact search uses the fewest it can need, so it finds the shortest
+     * trace through the nodes. Going through the nodes usually takes a few
+     * more steps than the straight distance, though, and then that search
+     * has to try nearly every node in the rectangle between the ends first.
+     * A fast search estimates 1 / FAST_MARGIN more, which heads it straight
+     * for the end at the cost of a trace at most that much longer than the
+     * shortest through the nodes.
+     *
+     * @return estimated positions after node, 0 for the goal
+     */
+    private int estimate(int node, Point end) {
+        if (node == toGoal.length) {
+            return 0;
+        }
+        long key = nodeKey[node];
+        int row = top((int) (key >>> 32)) + (int) key / SIZE;
+        int col = left((int) (key >>> 32)) + (int) key % SIZE;
+        int fewest = Math.max(0, Math.abs(row - end.x) + Math.abs(col - end.y) - 1);
+        return (margin == 0) ? fewest : fewest + fewest / margin;
+    }
+
+    /**
+     * Add an entry to the priority queue.
+     */
+    private void push(long entry, int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+            heapNode = Arrays.copyOf(heapNode, heap.length);
+        }
+        int i = heapSize++;
+        while (i > 0 && heap[(i - 1) / 2] > entry) {
+            heap[i] = heap[(i - 1) / 2];
+            heapNode[i] = heapNode[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = entry;
+        heapNode[i] = node;
+    }
+
+    /**
+     * Put an entry in place of the first one and move it down to where it belongs.
+     */
+    private void siftDown(long entry, int node) {
+        int i = 0;
+        while (i * 2 + 1 < heapSize) {
+            int child = i * 2 + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= entry) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapNode[i] = heapNode[child];
+            i = child;
+        }
+        heap[i] = entry;
+        heapNode[i] = node;
+    }
+
+    /**
+     * Turn the path of nodes the search found into positions, searching the
+     * clusters it passes through again to fill in each stretch inside them.
+     *
+     * @return positions of the trace in order from start to end
+     */
+    private ArrayList<Point> refine(Point start, Point end) {
+        ArrayList<Point> trace = new ArrayList<Point>();
+        int[] seeds = new int[4];
+        int goal = nodeKey.length;
+        if (parent[goal] == DIRECT) {
+            explore(directCluster, seeds, seedsNextTo(start, directCluster, seeds), 1);
+            appendPath(trace, directCluster, closestTo(end, directCluster), true);
+            return trace;
+        }
+        ArrayList<Integer> nodes = new ArrayList<Integer>();
+        for (int node = parent[goal]; node != FROM_START; node = parent[node]) {
+            nodes.add(node);
+        }
+        Collections.reverse(nodes);
+
+        int cluster = (int) (nodeKey[nodes.get(0)] >>> 32);
+        explore(cluster, seeds, seedsNextTo(start, cluster, seeds), 1);
+        appendPath(trace, cluster, (int) nodeKey[nodes.get(0)], true);
+        for (int i = 1; i < nodes.size(); i++) {
+            long from = nodeKey[nodes.get(i - 1)];
+            long to = nodeKey[nodes.get(i)];
+            cluster = (int) (to >>> 32);
+            if ((int) (from >>> 32) == cluster) {
+                seeds[0] = (int) from;
+                explore(cluster, seeds, 1, 0);
+                appendPath(trace, cluster, (int) to, false);
+            } else {
+                trace.add(new Point(top(cluster) + (int) to / SIZE, left(cluster) + (int) to % SIZE));
+            }
+        }
+        seeds[0] = (int) nodeKey[nodes.get(nodes.size() - 1)];
+        explore(cluster, seeds, 1, 0);
+        appendPath(trace, cluster, closestTo(end, cluster), false);
+        return trace;
+    }
+
+    /**
+     * Search again for the shortest trace using only the clusters a trace
+     * passes through and the clusters around them. A trace that leaves the
+     * corridor through an open position next to it is at least as long as
+     * the steps taken to get there plus the Manhattan distance still left to
+     * go. While that bound for some such position is shorter than the trace
+     * found, the clusters around the position are added to the corridor and
+     * it is searched again, so the result is the shortest trace on the board.
+     *
+     * @param trace trace found from the clusters, which the result is never longer than
+     * @return positions of the shortest trace, in order from start to end
+     */
+    private ArrayList<Point> refineInCorridor(ArrayList<Point> trace, Point start, Point end) {
+        boolean[] inCorridor = new boolean[CLUSTER_ROWS * CLUSTER_COLS];
+        for (Point p : trace) {
+            addAround(inCorridor, p.x, p.y);
+        }
+        boolean widened = true;
+        while (widened) {
+            widened = false;
+            int[] slot = new int[CLUSTER_ROWS * CLUSTER_COLS];     //place of each cluster in the corridor, -1 if not in it
+            int[] clusters = new int[CLUSTER_ROWS * CLUSTER_COLS];  //cluster in each place of the corridor
+            int slots = 0;
+            for (int cluster = 0; cluster < slot.length; cluster++) {
+                slot[cluster] = inCorridor[cluster] ? slots : -1;
+                if (inCorridor[cluster]) {
+                    clusters[slots++] = cluster;
+                }
+            }
+            //positions of the corridor are numbered by their cluster's slot, then by row and column within it
+            int[] from = new int[slots * SIZE * SIZE];
+            int[] steps = new int[slots * SIZE * SIZE];
+            int[] bfs = new int[slots * SIZE * SIZE];
+            Arrays.fill(from, -2);
+            //open positions just outside the corridor, as row, column and the shortest trace through them
+            int[] exits = new int[48];
+            int exitCount = 0;
+            int head = 0;
+            int tail = 0;
+            for (int direction = 0; direction < 4; direction++) {
+                int row = start.x + ROW_STEP[direction];
+                int col = start.y + COL_STEP[direction];
+                int index = corridorIndex(slot, row, col);
+                if (index >= 0 && from[index] == -2) {
+                    from[index] = -1;
+                    steps[index] = 1;
+                    bfs[tail++] = index;
+                } else if (index < 0 && board.isOpen(row, col)) {
+                    exits = addExit(exits, exitCount++, row, col, Math.abs(row - end.x) + Math.abs(col - end.y));
+                }
+            }
+            while (head < tail) {
+                int index = bfs[head++];
+                int row = corridorRow(clusters, index);
+                int col = corridorCol(clusters, index);
+                if (Math.abs(row - end.x) + Math.abs(col - end.y) == 1) {
+                    for (int i = 0; i < exitCount; i++) {
+                        if (exits[i * 3 + 2] < steps[index]) {  //a shorter trace may leave the corridor here
+                            widened |= addAround(inCorridor, exits[i * 3], exits[i * 3 + 1]);
+                        }
+                    }
+                    if (widened) {
+                        break;
+                    }
+                    ArrayList<Point> shortest = new ArrayList<Point>();
+                    for (int at = index; at >= 0; at = from[at]) {
+                        shortest.add(new Point(corridorRow(clusters, at), corridorCol(clusters, at)));
+                    }
+                    Collections.reverse(shortest);
+                    return shortest;
+                }
+                for (int direction = 0; direction < 4; direction++) {
+                    int nextRow = row + ROW_STEP[direction];
+                    int nextCol = col + COL_STEP[direction];
+                    int next = corridorIndex(slot, nextRow, nextCol);
+                    if (next >= 0 && from[next] == -2) {
+                        from[next] = index;
+                        steps[next] = steps[index] + 1;
+                        bfs[tail++] = next;
+                    } else if (next < 0 && board.isOpen(nextRow, nextCol)) {
+                        int bound = steps[index] + Math.abs(nextRow - end.x) + Math.abs(nextCol - end.y);
+                        if (bound < trace.size()) {
+                            exits = addExit(exits, exitCount++, nextRow, nextCol, bound);
+                        }
+                    }
+                }
+            }
+        }
+        return trace;   //cannot happen, since the trace itself lies in the corridor
+    }
+
+    /**
+     * Add the cluster holding a position, and the clusters around it, to a corridor.
+     *
+     * @return true if the corridor grew
+     */
+    private boolean addAround(boolean[] inCorridor, int row, int col) {
+        boolean added = false;
+        for (int clusterRow = row / SIZE - 1; clusterRow <= row / SIZE + 1; clusterRow++) {
+            for (int clusterCol = col / SIZE - 1; clusterCol <= col / SIZE + 1; clusterCol++) {
+                if (clusterRow >= 0 && clusterRow < CLUSTER_ROWS && clusterCol >= 0 && clusterCol < CLUSTER_COLS
+                        && !inCorridor[clusterRow * CLUSTER_COLS + clusterCol]) {
+                    inCorridor[clusterRow * CLUSTER_COLS + clusterCol] = true;
+                    added = true;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Store one position just outside a corridor, growing the array as needed.
+     *
+     * @return the array holding the positions
+     */
+    private static int[] addExit(int[] exits, int index, int row, int col, int bound) {
+        if (exits.length < (index + 1) * 3) {
+            exits = Arrays.copyOf(exits, exits.length * 2);
+        }
+        exits[index * 3] = row;
+        exits[index * 3 + 1] = col;
+        exits[index * 3 + 2] = bound;
+        return exits;
+    }
+
+    /**
+     * @return corridor index of an open position in the corridor, -1 for any other position
+     */
+    private int corridorIndex(int[] slot, int row, int col) {
+        if (!board.isOpen(row, col) || slot[(row / SIZE) * CLUSTER_COLS + col / SIZE] < 0) {
+            return -1;
+        }
+        return (slot[(row / SIZE) * CLUSTER_COLS + col / SIZE] * SIZE + row % SIZE) * SIZE + col % SIZE;
+    }
+
+    /**
+     * @return row of a position given its corridor index
+     */
+    private int corridorRow(int[] clusters, int index) {
+        return top(clusters[index / (SIZE * SIZE)]) + (index / SIZE) % SIZE;
+    }
+
+    /**
+     * @return column of a position given its corridor index
+     */
+    private int corridorCol(int[] clusters, int index) {
+        return left(clusters[index / (SIZE * SIZE)]) + index % SIZE;
+    }
+
+    /**
+     * Find the distances from a node to the nodes of its cluster, if not found already.
+     *
+     * @return distances, indexed by the other node's place among the nodes of the cluster
+     */
+    private char[] distancesInside(int node) {
+        if (inside[node] == null) {
+            int cluster = (int) (nodeKey[node] >>> 32);
+            int first = nodeStart[cluster];
+            char[] distances = new char[nodeStart[cluster + 1] - first];
+            explore(cluster, new int[]{(int) nodeKey[node]}, 1, 0);
+            for (int other = 0; other < distances.length; other++) {
+                int local = (int) nodeKey[first + other];
+                distances[other] = (reached[local] == exploreNumber) ? (char) distance[local] : NO_PATH;
+            }
+            inside[node] = distances;
+            clusterSearches++;
+        }
+        return inside[node];
+    }
+
+    /**
+     * Breadth-first search of the open positions of one cluster.
+     *
+     * @param cluster       cluster to search
+     * @param seeds         open positions within the cluster to start from, as row * SIZE + col
+     * @param count         number of seeds
+     * @param seedDistance  distance given to the seeds
+     */
+    private void explore(int cluster, int[] seeds, int count, int seedDistance) {
+        if (openCluster != cluster) {   //refine() and the ends of a trace search the same cluster several times in a row
+            int top = top(cluster);
+            int left = left(cluster);
+            for (int row = 0; row < SIZE; row++) {
+                for (int col = 0; col < SIZE; col++) {
+                    open[row * SIZE + col] = board.isOpen(top + row, left + col);
+                }
+            }
+            openCluster = cluster;
+        }
+        exploreNumber++;
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            if (reached[seeds[i]] != exploreNumber) {
+                reached[seeds[i]] = exploreNumber;
+                distance[seeds[i]] = seedDistance;
+                previous[seeds[i]] = -1;
+                queue[tail++] = seeds[i];
+            }
+        }
+        while (head < tail) {
+            int local = queue[head++];
+            int row = local / SIZE;
+            int col = local % SIZE;
+            for (int direction = 0; direction < 4; direction++) {
+                int next = local + ROW_STEP[direction] * SIZE + COL_STEP[direction];
+                if (row + ROW_STEP[direction] >= 0 && row + ROW_STEP[direction] < SIZE && col + COL_STEP[direction] >= 0
+                        && col + COL_STEP[direction] < SIZE && open[next] && reached[next] != exploreNumber) {
+                    reached[next] = exploreNumber;
+                    distance[next] = distance[local] + 1;
+                    previous[next] = local;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the path the last explore() found to a position to the end of a trace.
+     *
+     * @param trace       trace to extend
+     * @param cluster     cluster explore() searched
+     * @param target      position within the cluster the path leads to
+     * @param includeSeed true to add the position the path starts from as well
+     */
+    private void appendPath(ArrayList<Point> trace, int cluster, int target, boolean includeSeed) {
+        int size = trace.size();
+        for (int local = target; local >= 0 && (includeSeed || previous[local] >= 0); local = previous[local]) {
+            trace.add(new Point(top(cluster) + local / SIZE, left(cluster) + local % SIZE));
+        }
+        Collections.reverse(trace.subList(size, trace.size()));
+    }
+
+    /**
+     * @return the position next to end within cluster that the last explore() reached first
+     */
+    private int closestTo(Point end, int cluster) {
+        int[] seeds = new int[4];
+        int count = seedsNextTo(end, cluster, seeds);
+        int closest = -1;
+        for (int i = 0; i < count; i++) {
+            if (reached[seeds[i]] == exploreNumber && (closest < 0 || distance[seeds[i]] < distance[closest])) {
+                closest = seeds[i];
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * @return clusters holding the open positions next to a position, each once
+     */
+    private int[] clustersNextTo(Point p) {
+        int[] clusters = new int[4];
+        int count = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            int row = p.x + ROW_STEP[direction];
+            int col = p.y + COL_STEP[direction];
+            if (board.isOpen(row, col)) {
+                int cluster = (row / SIZE) * CLUSTER_COLS + col / SIZE;
+                boolean found = false;
+                for (int i = 0; i < count; i++) {
+                    found |= clusters[i] == cluster;
+                }
+                if (!found) {
+                    clusters[count++] = cluster;
+                }
+            }
+        }
+        return Arrays.copyOf(clusters, count);
+    }
+
+    /**
+     * Collect the open positions next to a position that lie in a cluster.
+     *
+     * @param seeds filled with the positions, as row * SIZE + col within the cluster
+     * @return number of positions found
+     */
+    private int seedsNextTo(Point p, int cluster, int[] seeds) {
+        int count = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            int row = p.x + ROW_STEP[direction];
+            int col = p.y + COL_STEP[direction];
+            if (board.isOpen(row, col) && (row / SIZE) * CLUSTER_COLS + col / SIZE == cluster) {
+                seeds[count++] = (row % SIZE) * SIZE + col % SIZE;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return (cluster << 32 | position within the cluster) of an in-bounds position
+     */
+    private long key(int row, int col) {
+        return ((long) ((row / SIZE) * CLUSTER_COLS + col / SIZE) << 32) | ((row % SIZE) * SIZE + col % SIZE);
+    }
+
+    /**
+     * @return node with the given key, searching only the nodes of its cluster
+     */
+    private int node(long key) {
+        int cluster = (int) (key >>> 32);
+        return Arrays.binarySearch(nodeKey, nodeStart[cluster], nodeStart[cluster + 1], key);
+    }
+
+    /**
+     * @return first row of a cluster
+     */
+    private int top(int cluster) {
+        return (cluster / CLUSTER_COLS) * SIZE;
+    }
+
+    /**
+     * @return first column of a cluster
+     */
+    private int left(int cluster) {
+        return (cluster % CLUSTER_COLS) * SIZE;
+    }
+
+    /**
+     * Length of the shortest trace between two positions, found with a
+     * breadth-first search of the whole board that keeps only a bit per
+     * position and the current layer of the search. This is the search the
+     * clusters are meant to avoid, for measuring how far a trace is from the
+     * shortest.
+     *
+     * @param start position the trace starts next to
+     * @param end   position the trace ends next to
+     * @return number of positions in the shortest trace, or 0 if there is none
+     */
+    public int shortestLength(Point start, Point end) {
+        long[] visited = new long[(int) (((long) ROWS * COLS + 63) / 64)];
+        long[] layer = new long[16];    //positions as row * COLS + col
+        long[] next = new long[16];
+        int size = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            int row = start.x + ROW_STEP[direction];
+            int col = start.y + COL_STEP[direction];
+            if (visit(visited, row, col)) {
+                layer = append(layer, size++, (long) row * COLS + col);
+            }
+        }
+        for (int length = 1; size > 0; length++) {
+            int nextSize = 0;
+            for (int i = 0; i < size; i++) {
+                int row = (int) (layer[i] / COLS);
+                int col = (int) (layer[i] % COLS);
+                if (Math.abs(row - end.x) + Math.abs(col - end.y) == 1) {
+                    return length;
+                }
+                for (int direction = 0; direction < 4; direction++) {
+                    if (visit(visited, row + ROW_STEP[direction], col + COL_STEP[direction])) {
+                        next = append(next, nextSize++, (long) (row + ROW_STEP[direction]) * COLS + col + COL_STEP[direction]);
+                    }
+                }
+            }
+            long[] done = layer;
+            layer = next;
+            next = done;
+            size = nextSize;
+        }
+        return 0;
+    }
+
+    /**
+     * Mark an open position visited.
+     *
+     * @return true if the position is open and was not visited before
+     */
+    private boolean visit(long[] visited, int row, int col) {
+        if (!board.isOpen(row, col)) {
+            return false;
+        }
+        long index = (long) row * COLS + col;
+        long bit = 1L << index;
+        if ((visited[(int) (index >>> 6)] & bit) != 0) {
+            return false;
+        }
+        visited[(int) (index >>> 6)] |= bit;
+        return true;
+    }
+
+    /**
+     * Store a value at the end of a list, growing the array as needed.
+     *
+     * @return the array holding the list
+     */
+    private static long[] append(long[] list, int size, long value) {
+        if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+        }
+        list[size] = value;
+        return list;
+    }
+
+    /**
+     * @return number of clusters the board is split into
+     */
+    public int numClusters() {
+        return CLUSTER_ROWS * CLUSTER_COLS;
+    }
+
+    /**
+     * @return number of transition nodes on the cluster borders
+     */
+    public int numNodes() {
+        return nodeKey.length;
+    }
+
+    /**
+     * @return number of nodes the last trace expanded
+     */
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * @return number of searches inside a cluster run so far to find the distances from a node
+     */
+    public int getClusterSearches() {
+        return clusterSearches;
+    }
+
+} // class HierarchicalTracer
@@ -0,0 +1,325 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Finds one shortest trace with an A* search that uses jump point search
+ * (JPS) to skip over the open stretches of a board.
+ *
+ * Every step on a board costs the same, so most positions have many shortest
+ * traces through them that differ only in the order of their steps. The
+ * search only follows traces that take their vertical steps as early as
+ * they can: after a horizontal step a trace keeps going the same way, and
+ * only turns up or down where the position behind it in that direction is
+ * blocked, so no trace that turned earlier can reach the same place as
+ * quickly. After a vertical step it may keep going or turn either way.
+ *
+ * Instead of adding each position of such a trace to the search, a jump
+ * moves in a straight line until it reaches a jump point: the end of the
+ * trace, a position where a horizontal trace has to be allowed to turn, or a
+ * position of a vertical trace where a horizontal jump would find one of
+ * those. Only jump points enter the priority queue, so an open board is
+ * crossed with a handful of expanded nodes where a breadth-first search
+ * visits every position. The search still finds a shortest trace, since
+ * every position has a shortest trace of that form.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class JumpPointTracer {
+    /**
+     * no jump point in the direction of a jump
+     */
+    private static final int NONE = -1;
+
+    private final CircuitBoard board;
+    private final int ROWS;
+    private final int COLS;
+    private final int endRow;
+    private final int endCol;
+    /**
+     * row * COLS + col of the starting component, the root of the search
+     */
+    private final int start;
+
+    /**
+     * number of steps from the starting component to each jump point reached, Integer.MAX_VALUE for the rest
+     */
+    private int[] cost;
+    /**
+     * jump point each jump point was reached from, in a straight line
+     */
+    private int[] parent;
+    /**
+     * priority queue of the search, (estimated trace length << 32 | Integer.MAX_VALUE - cost) of each entry,
+     * so that of jump points with the same estimate, the one furthest along is expanded first
+     */
+    private long[] heap = new long[64];
+    /**
+     * jump point of each entry in heap
+     */
+    private int[] heapNode = new int[64];
+    private int heapSize = 0;
+    private int nodesExpanded = 0;
+
+    /**
+     * Prepare to trace a board. The board must not change until trace() is done.
+     *
+     * @param board board to trace
+     */
+    public JumpPointTracer(CircuitBoard board) {
+        this.board = board;
+        ROWS = board.numRows();
+        COLS = board.numCols();
+        Point end = board.getEndingPoint();
+        endRow = end.x;
+        endCol = end.y;
+        Point begin = board.getStartingPoint();
+        start = begin.x * COLS + begin.y;
+    }
+
+    /**
+     * Find a shortest trace from '1' to '2'.
+     *
+     * @return the trace, or null if there is none
+     */
+    public TraceState trace() {
+        TraceState state = null;
+        ArrayList<Point> path = tracePath();
+        if (path != null) {
+            for (Point point : path) {
+                state = (state == null) ? new TraceState(board, point.x, point.y) : new TraceState(state, point.x, point.y);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Find a shortest trace from '1' to '2' as a list of positions, without
+     * building the TraceState for it.
+     *
+     * @return row, column points of the trace from the position after '1', or null if there is none
+     */
+    public ArrayList<Point> tracePath() {
+        cost = new int[ROWS * COLS];
+        parent = new int[ROWS * COLS];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        heapSize = 0;
+        nodesExpanded = 0;
+        cost[start] = 0;
+        push(start);
+        while (heapSize > 0) {
+            int steps = (int) (Integer.MAX_VALUE - (heap[0] & 0xFFFFFFFFL));
+            int node = pop();
+            if (steps != cost[node]) {  //reached again more cheaply after this entry was queued
+                continue;
+            }
+            if (node != start && isGoal(node / COLS, node % COLS)) {
+                return pathTo(node);
+            }
+            nodesExpanded++;
+            expand(node);
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of jump points the last trace() or tracePath() expanded
+     */
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * Jump from a jump point in every direction the ordering of steps allows
+     * after the straight line that reached it.
+     *
+     * @param node jump point to expand
+     */
+    private void expand(int node) {
+        int row = node / COLS;
+        int col = node % COLS;
+        if (node == start) {
+            reach(node, jumpVertical(row, col, -1));
+            reach(node, jumpVertical(row, col, 1));
+            reach(node, jumpHorizontal(row, col, -1));
+            reach(node, jumpHorizontal(row, col, 1));
+            return;
+        }
+        int from = parent[node];
+        if (from / COLS == row) {   //reached by a horizontal jump
+            int colStep = Integer.signum(col - from % COLS);
+            reach(node, jumpHorizontal(row, col, colStep));
+            for (int rowStep = -1; rowStep < 2; rowStep += 2) {
+                if (isForced(row, col, rowStep, colStep)) {
+                    reach(node, jumpVertical(row, col, rowStep));
+                }
+            }
+        } else {
+            reach(node, jumpVertical(row, col, Integer.signum(row - from / COLS)));
+            reach(node, jumpHorizontal(row, col, -1));
+            reach(node, jumpHorizontal(row, col, 1));
+        }
+    }
+
+    /**
+     * Record a jump point found from another, if this is the shortest way to it found so far.
+     *
+     * @param from jump point the jump started from
+     * @param node jump point found, or NONE
+     */
+    private void reach(int from, int node) {
+        if (node == NONE) {
+            return;
+        }
+        int steps = cost[from] + Math.abs(node / COLS - from / COLS) + Math.abs(node % COLS - from % COLS);
+        if (steps < cost[node]) {
+            cost[node] = steps;
+            parent[node] = from;
+            push(node);
+        }
+    }
+
+    /**
+     * Move horizontally from a position until reaching a jump point or a
+     * position that is not open.
+     *
+     * @param row     row to move along
+     * @param col     column the jump starts from
+     * @param colStep -1 to move left, 1 to move right
+     * @return the jump point reached, or NONE
+     */
+    private int jumpHorizontal(int row, int col, int colStep) {
+        while (true) {
+            col += colStep;
+            if (!board.isOpen(row, col)) {
+                return NONE;
+            }
+            if (isGoal(row, col) || isForced(row, col, -1, colStep) || isForced(row, col, 1, colStep)) {
+                return row * COLS + col;
+            }
+        }
+    }
+
+    /**
+     * Move vertically from a position until reaching a jump point or a
+     * position that is not open. A position is a jump point when a
+     * horizontal jump from it in either direction finds one.
+     *
+     * @param row     row the jump starts from
+     * @param col     column to move along
+     * @param rowStep -1 to move up, 1 to move down
+     * @return the jump point reached, or NONE
+     */
+    private int jumpVertical(int row, int col, int rowStep) {
+        while (true) {
+            row += rowStep;
+            if (!board.isOpen(row, col)) {
+                return NONE;
+            }
+            if (isGoal(row, col) || jumpHorizontal(row, col, -1) != NONE || jumpHorizontal(row, col, 1) != NONE) {
+                return row * COLS + col;
+            }
+        }
+    }
+
+    /**
+     * A trace moving horizontally into a position has to be allowed to turn
+     * up or down there when the position beside it is open, but the position
+     * beside the one it came from is not, so no trace that turned a step
+     * earlier reaches it as quickly.
+     *
+     * @param row     row of the position
+     * @param col     column of the position
+     * @param rowStep -1 to turn up, 1 to turn down
+     * @param colStep direction of the horizontal trace
+     * @return true if the trace may turn in direction rowStep
+     */
+    private boolean isForced(int row, int col, int rowStep, int colStep) {
+        return board.isOpen(row + rowStep, col) && !board.isOpen(row + rowStep, col - colStep);
+    }
+
+    /**
+     * @return true if given position is next to the ending component
+     */
+    private boolean isGoal(int row, int col) {
+        return Math.abs(row - endRow) + Math.abs(col - endCol) == 1;
+    }
+
+    /**
+     * List the positions of the trace ending at a goal position, filling in
+     * the positions along each straight line between its jump points.
+     *
+     * @param goal jump point next to the ending component
+     * @return the trace from the position after '1' to goal
+     */
+    private ArrayList<Point> pathTo(int goal) {
+        ArrayList<Integer> jumps = new ArrayList<Integer>();
+        for (int node = goal; node != start; node = parent[node]) {
+            jumps.add(node);
+        }
+        ArrayList<Point> path = new ArrayList<Point>(cost[goal]);
+        int row = start / COLS;
+        int col = start % COLS;
+        for (int i = jumps.size() - 1; i >= 0; i--) {
+            int toRow = jumps.get(i) / COLS;
+            int toCol = jumps.get(i) % COLS;
+            while (row != toRow || col != toCol) {
+                row += Integer.signum(toRow - row);
+                col += Integer.signum(toCol - col);
+                path.add(new Point(row, col));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Queue a jump point with its estimated trace length: the steps taken so
+     * far plus the Manhattan distance still to go to a position next to '2'.
+     *
+     * @param node jump point with its cost set
+     */
+    private void push(int node) {
+        int row = node / COLS;
+        int col = node % COLS;
+        long estimate = cost[node] + Math.abs(row - endRow) + Math.abs(col - endCol) - 1;
+        long key = estimate << 32 | (Integer.MAX_VALUE - cost[node]);
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+            heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0 && heap[(i - 1) / 2] > key) {
+            heap[i] = heap[(i - 1) / 2];
+            heapNode[i] = heapNode[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = key;
+        heapNode[i] = node;
+    }
+
+    /**
+     * @return the jump point with the smallest key, removed from the queue
+     */
+    private int pop() {
+        int node = heapNode[0];
+        long key = heap[--heapSize];
+        int moved = heapNode[heapSize];
+        int i = 0;
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapNode[i] = heapNode[child];
+            i = child;
+        }
+        heap[i] = key;
+        heapNode[i] = moved;
+        return node;
+    }
+
+} // class JumpPointTracer
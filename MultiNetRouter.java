@@ -0,0 +1,604 @@
+import java.awt.*;
+import java.io.FileNotFoundException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Routes a board with many nets - pairs of terminals that each need their own
+ * trace - where a CircuitBoard only has one '1' and one '2'. Each net is
+ * routed in turn with a breadth-first search for its shortest trace, and the
+ * trace then blocks the positions it uses for every later net.
+ *
+ * When a net cannot be routed, a second search finds the path to its other
+ * terminal that crosses the fewest positions of earlier traces. The nets
+ * whose traces it crosses are ripped up, the blocked net is routed, and the
+ * ripped-up nets are routed again at the end of the queue. The number of
+ * rip-ups is limited, so nets that keep blocking each other cannot loop
+ * forever; whatever is still unroutable then is reported as such.
+ *
+ * The search buffers are allocated once for the board and reused by every
+ * search: positions are marked with the number of the search that reached
+ * them instead of clearing the buffers between nets, so routing 50 nets costs
+ * about as much as 50 breadth-first searches of the board.
+ *
+ * Boards use an extended format. The first line holds the number of rows,
+ * columns and nets, and each later line is a row of positions: 'O' open, 'X'
+ * blocked, or a net number from 1 to the number of nets. Every net number
+ * appears exactly twice, once for each terminal. For example:
+ * <pre>
+ * 3 4 2
+ * 1 O O 2
+ * O X X O
+ * 2 O O 1
+ * </pre>
+ *
+ * To RUN: java MultiNetRouter board
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class MultiNetRouter {
+    //owner codes of positions that no net owns
+    private static final int FREE = 0;
+    private static final int BLOCKED = -1;
+    /**
+     * largest array length the JVM reliably allocates
+     */
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    /**
+     * rip-ups allowed for each net before routing stops ripping up
+     */
+    private static final int RIP_UPS_PER_NET = 10;
+    /**
+     * extra cost for searchCrossing() of stepping onto another net's trace
+     */
+    private static final int CROSSING_COST = 8;
+    /**
+     * congestion added to each position of a trace that is ripped up
+     */
+    private static final int CONGESTION_STEP = 4;
+    //row and column change of each step direction: up, down, left, right
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+
+    private final int ROWS;
+    private final int COLS;
+    private final int NETS;
+    /**
+     * FREE, BLOCKED or the net whose terminal or trace is at each position, indexed by row * COLS + col
+     */
+    private final int[] owner;
+    /**
+     * positions of the two terminals of each net, indexed by net number
+     */
+    private final int[] source;
+    private final int[] target;
+    /**
+     * positions of each net's trace between its terminals, null while the net is not routed
+     */
+    private final int[][] routes;
+    private int ripUps = 0;
+
+    //search buffers shared by every search, see search()
+    /**
+     * number of the search that last reached each position
+     */
+    private final int[] visited;
+    private int searchNumber = 0;
+    /**
+     * cost of reaching each position in the current search
+     */
+    private final int[] distance;
+    /**
+     * position each position was reached from in the current search
+     */
+    private final int[] previous;
+    /**
+     * positions waiting to be searched by search()
+     */
+    private final int[] queue;
+    /**
+     * binary heap of positions waiting to be searched by searchCrossing(), each
+     * entry the cost of the position in the high 32 bits and the position in
+     * the low 32 - a position is added again each time a cheaper way there is
+     * found, so push() grows the heap when it is full
+     */
+    private long[] heap;
+    /**
+     * extra cost for searchCrossing() of each position, raised each time a trace there is ripped up
+     */
+    private final int[] congestion;
+
+    /**
+     * Read a multi-net board from a file in the format described above.
+     *
+     * @param filename file containing the board
+     * @throws FileNotFoundException      if the file cannot be opened
+     * @throws InvalidFileFormatException for any file formatting or content issue
+     */
+    public MultiNetRouter(String filename) throws FileNotFoundException {
+        NetParser parser = new NetParser(filename);
+        BoardLoader.tokenize(filename, parser);
+        parser.finish();
+        ROWS = parser.rows;
+        COLS = parser.cols;
+        NETS = parser.nets;
+        owner = parser.owner;
+        source = parser.source;
+        target = parser.target;
+        routes = new int[NETS + 1][];
+        visited = new int[ROWS * COLS];
+        distance = new int[ROWS * COLS];
+        previous = new int[ROWS * COLS];
+        queue = new int[ROWS * COLS];
+        heap = new long[Math.min(ROWS * COLS, 1024)];
+        congestion = new int[ROWS * COLS];
+    }
+
+    /**
+     * Tokenizer that reads the multi-net format, with the same checks in the
+     * same order as CircuitBoard's format.
+     */
+    private static class NetParser extends BoardLoader.Tokenizer {
+        /**
+         * value of a token that is neither 'O', 'X' nor a number from 1 to Integer.MAX_VALUE
+         */
+        private static final long INVALID = Long.MIN_VALUE;
+
+        private int rows;
+        private int cols;
+        private int nets;
+        private int[] owner;
+        private int[] source;
+        private int[] target;
+
+        /**
+         * row of the board being parsed
+         */
+        private int row = 0;
+        /**
+         * value of each token on the current line, checked when the line ends
+         */
+        private long[] values = new long[3];
+        /**
+         * value of the current token: its number, or FREE or BLOCKED for 'O'
+         * and 'X', or INVALID
+         */
+        private long value;
+
+        NetParser(String filename) {
+            super(filename);
+        }
+
+        @Override
+        void startToken(byte b) {
+            value = (b == 'O') ? FREE : (b == 'X') ? BLOCKED : (b == '0') ? INVALID : digit(0, b);
+        }
+
+        @Override
+        void continueToken(byte b) {
+            value = (value > 0) ? digit(value, b) : INVALID;  //'O' and 'X' are single bytes, and numbers do not start with 0
+        }
+
+        /**
+         * @return number with the digit b appended, or INVALID if b is not a
+         * digit or the number gets too big for an int
+         */
+        private static long digit(long number, byte b) {
+            if (number == INVALID || b < '0' || b > '9') {
+                return INVALID;
+            }
+            long result = number * 10 + (b - '0');
+            return (result > Integer.MAX_VALUE) ? INVALID : result;
+        }
+
+        @Override
+        void endToken() {
+            if (tokens <= values.length) {
+                values[tokens - 1] = value;
+            }
+        }
+
+        @Override
+        void endLine() {
+            if (line == 0) {
+                if (tokens != 3) {
+                    throw new InvalidFileFormatException(" Invalid number of dimensions in file " + filename);
+                }
+                if (values[0] < 1 || values[1] < 1 || values[2] < 1) {     //INVALID, 'O' and 'X' are all below 1
+                    throw new InvalidFileFormatException(" Invalid number of dimensions in file " + filename);
+                }
+                rows = (int) values[0];
+                cols = (int) values[1];
+                nets = (int) values[2];
+                if ((long) rows * cols > size) {    //every position takes a byte, so the board cannot all be there
+                    throw new InvalidFileFormatException(filename + " has too few rows.");
+                }
+                if ((long) rows * cols > MAX_ARRAY_LENGTH || 2L * nets > (long) rows * cols) {
+                    throw new InvalidFileFormatException(" Invalid number of dimensions in file " + filename);
+                }
+                owner = new int[rows * cols];
+                source = new int[nets + 1];
+                target = new int[nets + 1];
+                Arrays.fill(source, -1);
+                Arrays.fill(target, -1);
+                values = new long[cols];
+            } else {
+                if (row >= rows) {
+                    throw new InvalidFileFormatException(filename + " has too many rows.");
+                }
+                if (tokens != cols) {
+                    throw new InvalidFileFormatException(" Invalid number of columns in file " + filename);
+                }
+                for (int col = 0; col < cols; col++) {
+                    owner[row * cols + col] = checkPosition(values[col], row * cols + col);
+                }
+                row++;
+            }
+        }
+
+        /**
+         * Check one position of the file and record it if it is a terminal.
+         *
+         * @return owner code of the position
+         */
+        private int checkPosition(long value, int index) {
+            if (value == FREE || value == BLOCKED) {
+                return (int) value;
+            }
+            if (value < 1 || value > nets) {
+                throw new InvalidFileFormatException(filename + " has invalid characters.");
+            }
+            int net = (int) value;
+            if (source[net] < 0) {
+                source[net] = index;
+            } else if (target[net] < 0) {
+                target[net] = index;
+            } else {
+                throw new InvalidFileFormatException(filename + " has more than two terminals for net " + net + ".");
+            }
+            return net;
+        }
+
+        /**
+         * Check the board as a whole, once the tokenizer has seen the end of the file.
+         */
+        void finish() {
+            if (row < rows) {
+                throw new InvalidFileFormatException(filename + " has too few rows.");
+            }
+            for (int net = 1; net <= nets; net++) {
+                if (target[net] < 0) {
+                    throw new InvalidFileFormatException(filename + " has fewer than two terminals for net " + net + ".");
+                }
+            }
+        }
+    }
+
+    /**
+     * Route every net, shortest distance between terminals first, ripping up
+     * and rerouting nets that block others.
+     *
+     * @return number of nets routed
+     */
+    public int route() {
+        ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+        ArrayList<Integer> order = new ArrayList<Integer>();
+        for (int net = 1; net <= NETS; net++) {
+            if (routes[net] == null) {
+                order.add(net);
+            }
+        }
+        order.sort(Comparator.comparingInt(this::manhattanDistance));
+        pending.addAll(order);
+        int routed = NETS - order.size();
+        int mostRouted = routed;
+        int[] bestOwner = owner.clone();
+        int[][] bestRoutes = routes.clone();
+        int maxRipUps = RIP_UPS_PER_NET * NETS;
+        while (!pending.isEmpty()) {
+            int net = pending.poll();
+            if (search(net)) {
+                place(net);
+                routed++;
+            } else if (ripUps < maxRipUps && searchCrossing(net)) {
+                for (int blocker : blockersOnPath(net)) {
+                    ripUp(blocker);
+                    pending.add(blocker);
+                    ripUps++;
+                    routed--;
+                }
+                if (search(net)) {      //the path found is free now, but there may be a shorter one
+                    place(net);
+                    routed++;
+                }
+            }
+            if (routed > mostRouted) {  //a rip-up that does not pay off must not lose nets routed before it
+                mostRouted = routed;
+                System.arraycopy(owner, 0, bestOwner, 0, owner.length);
+                System.arraycopy(routes, 0, bestRoutes, 0, routes.length);
+            }
+        }
+        if (routed < mostRouted) {
+            System.arraycopy(bestOwner, 0, owner, 0, owner.length);
+            System.arraycopy(bestRoutes, 0, routes, 0, routes.length);
+        }
+        return mostRouted;
+    }
+
+    /**
+     * Breadth-first search from a net's first terminal to its second through
+     * free positions, which finds a shortest trace if there is one.
+     * Afterwards previous[] leads back from the second terminal to the first.
+     *
+     * @param net net to search for
+     * @return true if the second terminal was reached
+     */
+    private boolean search(int net) {
+        searchNumber++;
+        int head = 0;
+        int tail = 0;
+        visited[source[net]] = searchNumber;
+        queue[tail++] = source[net];
+        while (head < tail) {
+            int index = queue[head++];
+            if (index == target[net]) {
+                return true;
+            }
+            int row = index / COLS;
+            int col = index % COLS;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextRow = row + ROW_STEP[direction];
+                int nextCol = col + COL_STEP[direction];
+                if (nextRow < 0 || nextRow >= ROWS || nextCol < 0 || nextCol >= COLS) {
+                    continue;
+                }
+                int next = nextRow * COLS + nextCol;
+                if (visited[next] != searchNumber && (owner[next] == FREE || next == target[net])) {
+                    visited[next] = searchNumber;
+                    previous[next] = index;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cheapest-first (Dijkstra) search from a net's first terminal to its
+     * second that may also cross other nets' traces, though not their
+     * terminals. A free position costs 1 and a position of another trace
+     * costs CROSSING_COST more, plus its congestion - see ripUp() - so the
+     * path found rips up as little as it can, and avoids ripping up the same
+     * places over and over. Afterwards previous[] leads back from the second
+     * terminal to the first.
+     *
+     * @param net net to search for
+     * @return true if the second terminal was reached
+     */
+    private boolean searchCrossing(int net) {
+        searchNumber++;
+        int size = 0;
+        visited[source[net]] = searchNumber;
+        distance[source[net]] = 0;
+        size = push(size, 0, source[net]);
+        while (size > 0) {
+            long top = heap[0];
+            size = pop(size);
+            int index = (int) top;
+            if ((int) (top >>> 32) > distance[index]) {    //a cheaper way there was found after this was added
+                continue;
+            }
+            if (index == target[net]) {
+                return true;
+            }
+            int row = index / COLS;
+            int col = index % COLS;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextRow = row + ROW_STEP[direction];
+                int nextCol = col + COL_STEP[direction];
+                if (nextRow < 0 || nextRow >= ROWS || nextCol < 0 || nextCol >= COLS) {
+                    continue;
+                }
+                int next = nextRow * COLS + nextCol;
+                int cost;
+                if (owner[next] == FREE || next == target[net]) {
+                    cost = 1;
+                } else if (owner[next] != BLOCKED && owner[next] != net
+                        && next != source[owner[next]] && next != target[owner[next]]) {
+                    cost = 1 + CROSSING_COST + congestion[next];
+                } else {
+                    continue;
+                }
+                int reached = distance[index] + cost;
+                if (visited[next] != searchNumber || reached < distance[next]) {
+                    visited[next] = searchNumber;
+                    distance[next] = reached;
+                    previous[next] = index;
+                    size = push(size, reached, next);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a position to the binary heap used by searchCrossing().
+     *
+     * @return new size of the heap
+     */
+    private int push(int size, int cost, int index) {
+        if (size == heap.length) {
+            if (size == MAX_ARRAY_LENGTH) {
+                throw new IllegalStateException("too many positions waiting to be searched");
+            }
+            heap = Arrays.copyOf(heap, (int) Math.min(2L * size, MAX_ARRAY_LENGTH));
+        }
+        long entry = ((long) cost << 32) | index;
+        int child = size;
+        while (child > 0 && heap[(child - 1) / 2] > entry) {
+            heap[child] = heap[(child - 1) / 2];
+            child = (child - 1) / 2;
+        }
+        heap[child] = entry;
+        return size + 1;
+    }
+
+    /**
+     * Remove the cheapest entry of the binary heap used by searchCrossing().
+     *
+     * @return new size of the heap
+     */
+    private int pop(int size) {
+        long last = heap[--size];
+        int parent = 0;
+        while (2 * parent + 1 < size) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = last;
+        return size;
+    }
+
+    /**
+     * @return nets whose traces lie on the path the last search found for net
+     */
+    private ArrayList<Integer> blockersOnPath(int net) {
+        ArrayList<Integer> blockers = new ArrayList<Integer>();
+        for (int index = previous[target[net]]; index != source[net]; index = previous[index]) {
+            if (owner[index] != FREE && !blockers.contains(owner[index])) {
+                blockers.add(owner[index]);
+            }
+        }
+        return blockers;
+    }
+
+    /**
+     * Claim the positions of the path the last search found for net.
+     */
+    private void place(int net) {
+        int length = 0;
+        for (int index = previous[target[net]]; index != source[net]; index = previous[index]) {
+            length++;
+        }
+        int[] route = new int[length];
+        for (int index = previous[target[net]]; index != source[net]; index = previous[index]) {
+            route[--length] = index;
+            owner[index] = net;
+        }
+        routes[net] = route;
+    }
+
+    /**
+     * Free the positions of a net's trace, and make them more expensive for
+     * later searchCrossing() calls to rip up again.
+     */
+    private void ripUp(int net) {
+        for (int index : routes[net]) {
+            owner[index] = FREE;
+            congestion[index] += CONGESTION_STEP;
+        }
+        routes[net] = null;
+    }
+
+    /**
+     * @return Manhattan distance between a net's terminals
+     */
+    private int manhattanDistance(int net) {
+        return Math.abs(source[net] / COLS - target[net] / COLS) + Math.abs(source[net] % COLS - target[net] % COLS);
+    }
+
+    /**
+     * @return number of nets on the board
+     */
+    public int numNets() {
+        return NETS;
+    }
+
+    /**
+     * @param net net number, from 1 to numNets()
+     * @return true if route() found a trace for the net
+     */
+    public boolean isRouted(int net) {
+        return routes[net] != null;
+    }
+
+    /**
+     * @param net net number, from 1 to numNets()
+     * @return positions of the net's trace from its first terminal to its second, both terminals
+     * included, or null if it is not routed
+     */
+    public ArrayList<Point> getRoute(int net) {
+        if (routes[net] == null) {
+            return null;
+        }
+        ArrayList<Point> points = new ArrayList<Point>();
+        points.add(new Point(source[net] / COLS, source[net] % COLS));
+        for (int index : routes[net]) {
+            points.add(new Point(index / COLS, index % COLS));
+        }
+        points.add(new Point(target[net] / COLS, target[net] % COLS));
+        return points;
+    }
+
+    /**
+     * @return number of times route() ripped up a net's trace
+     */
+    public int getRipUps() {
+        return ripUps;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        int width = String.valueOf(NETS).length();
+        StringBuilder str = new StringBuilder();
+        for (int index = 0; index < ROWS * COLS; index++) {
+            String token = (owner[index] == FREE) ? "O" : (owner[index] == BLOCKED) ? "X" : String.valueOf(owner[index]);
+            str.append(token).append(" ".repeat(width + 1 - token.length()));
+            if (index % COLS == COLS - 1) {
+                str.append("\n");
+            }
+        }
+        return str.toString();
+    }
+
+    /**
+     * Route a board and print it with every trace filled in with its net
+     * number, then the length of each net's trace, counted like
+     * TraceState.pathLength() without the terminals.
+     *
+     * @param args the board file
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("To USE: java MultiNetRouter board");
+            System.out.println("board: first line rows, columns and number of nets, then rows of O, X and net numbers,");
+            System.out.println("       with each net number appearing exactly twice.");
+            System.out.println("EXAMPLE: java MultiNetRouter ./boards/nets1.dat");
+            return;
+        }
+        try {
+            MultiNetRouter router = new MultiNetRouter(args[0]);
+            int routed = router.route();
+            System.out.println(router);
+            for (int net = 1; net <= router.numNets(); net++) {
+                ArrayList<Point> route = router.getRoute(net);
+                System.out.println("net " + net + ": " + ((route == null) ? "unroutable" : "length " + (route.size() - 2)));
+            }
+            System.out.println("Routed " + routed + " of " + router.numNets() + " nets with " + router.getRipUps() + " rip-ups.");
+        } catch (Exception e) {
+            System.err.println(CircuitTracer.errorMessage(e));
+        }
+    }
+
+} // class MultiNetRouter
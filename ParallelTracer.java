@@ -0,0 +1,165 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Branch-and-bound search for every shortest trace, split across a
+ * ForkJoinPool. Each initial TraceState around the starting point becomes a
+ * task, and a task hands new states off as tasks of their own whenever the
+ * pool is short of queued work, so idle threads can steal them. Every task
+ * prunes against the same best-known path length, so a short solution found
+ * by one thread immediately narrows the search of all the others.
+ *
+ * Interrupting the thread waiting in getShortestPaths() cancels every task,
+ * the same way CircuitTracer stops a sequential search.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class ParallelTracer {
+    /**
+     * a task forks new states while fewer than this many tasks are waiting in its queue
+     */
+    private static final int SURPLUS_TASKS = 2;
+
+    private final CircuitBoard board;
+    private final int threads;
+    /**
+     * all solutions of length bestLength found so far
+     */
+    private final ArrayList<TraceState> bestPaths = new ArrayList<TraceState>();
+    /**
+     * length of the shortest solution found so far, read by every task for pruning
+     */
+    private volatile int bestLength = Integer.MAX_VALUE;
+    /**
+     * set once the search is over or abandoned, so that every task still running stops
+     */
+    private volatile boolean cancelled = false;
+
+    /**
+     * Prepare a parallel search of the given board.
+     *
+     * @param board   board to trace
+     * @param threads number of worker threads to search with
+     */
+    public ParallelTracer(CircuitBoard board, int threads) {
+        this.board = board;
+        this.threads = threads;
+    }
+
+    /**
+     * Search the board on a pool of worker threads.
+     *
+     * @return all shortest traces, empty if there are none
+     * @throws CancellationException if the calling thread is interrupted during the search
+     */
+    public ArrayList<TraceState> getShortestPaths() {
+        ArrayList<TraceTask> tasks = new ArrayList<TraceTask>();
+        Point startingPoint = board.getStartingPoint();
+        for (int i = -1; i <= 1; i += 2) { //create initial TraceStates
+            if (board.isOpen(startingPoint.x + i, startingPoint.y)) {
+                tasks.add(new TraceTask(new TraceState(board, startingPoint.x + i, startingPoint.y)));
+            }
+            if (board.isOpen(startingPoint.x, startingPoint.y + i)) {
+                tasks.add(new TraceTask(new TraceState(board, startingPoint.x, startingPoint.y + i)));
+            }
+        }
+        cancelled = false;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (TraceTask task : tasks) {
+                pool.execute(task);
+            }
+            for (TraceTask task : tasks) {
+                task.get();     //unlike join(), returns when the calling thread is interrupted
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("search interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            cancelled = true;
+            pool.shutdownNow();
+        }
+        return new ArrayList<TraceState>(bestPaths);
+    }
+
+    /**
+     * Add a solution if it ties the best found so far, replacing all of the
+     * previous solutions if it is shorter.
+     *
+     * @param solution TraceState that ends next to the ending point
+     */
+    private synchronized void addSolution(TraceState solution) {
+        if (solution.pathLength() < bestLength) {
+            bestPaths.clear();
+            bestLength = solution.pathLength();
+        }
+        if (solution.pathLength() == bestLength) {
+            bestPaths.add(solution);
+        }
+    }
+
+    /**
+     * Depth-first, bounded search of everything reachable from one TraceState.
+     */
+    @SuppressWarnings("serial")
+    private class TraceTask extends RecursiveAction {
+        private final TraceState initialState;
+
+        /**
+         * @param initialState state this task searches from
+         */
+        TraceTask(TraceState initialState) {
+            this.initialState = initialState;
+        }
+
+        @Override
+        protected void compute() {
+            Storage<TraceState> stateStore = new Storage<TraceState>(Storage.DataStructure.arrayStack);
+            ArrayList<TraceTask> forked = new ArrayList<TraceTask>();
+            TraceState[] children = new TraceState[4];
+            stateStore.store(initialState);
+            while (!stateStore.isEmpty()) {
+                if (cancelled) {
+                    throw new CancellationException("search interrupted");
+                }
+                TraceState currentEvaluated = stateStore.retrieve();
+                if (currentEvaluated.minSolutionLength() > bestLength) {    //cannot tie the best solution anymore
+                    continue;
+                }
+                if (currentEvaluated.isSolution()) {
+                    addSolution(currentEvaluated);
+                    continue;
+                }
+                int count = currentEvaluated.nextStates(children);
+                for (int i = 0; i < count; i++) {
+                    if (children[i].minSolutionLength() > bestLength) {
+                        continue;
+                    }
+                    if (i < count - 1 && getSurplusQueuedTaskCount() < SURPLUS_TASKS) {  //keep the most promising state for this thread
+                        TraceTask task = new TraceTask(children[i]);
+                        task.fork();
+                        forked.add(task);
+                    } else {
+                        stateStore.store(children[i]);
+                    }
+                }
+            }
+            for (TraceTask task : forked) {
+                task.join();
+            }
+        }
+    }
+
+} // class ParallelTracer
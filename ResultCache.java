@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Cache of solved boards, keyed by CircuitBoard.contentHash(), so a board that
+ * has been solved before is answered without searching it again.
+ *
+ * Results are kept in two tiers. The memory tier holds the most recently used
+ * results of this run, up to a limit on their encoded size, for batches that
+ * see the same board many times. The
+ * disk tier keeps one file per board in a cache directory, so results last
+ * from one run to the next. When the directory grows past its size limit, the
+ * least recently used files are deleted; using a file updates its modified
+ * time. Both tiers store the encoded form of the solutions, which is a few
+ * bytes per step of each trace. A result whose encoded form would not fit
+ * in the directory's size limit is not cached at all.
+ *
+ * The cache never causes a solve to fail: a file that cannot be read is a
+ * miss, and a result that cannot be encoded or written is simply not cached. It is safe
+ * to use from several threads at once. Its lock only guards the memory tier
+ * and the counters; files are written, moved into place and evicted outside
+ * it, so threads never wait for each other's disk I/O.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class ResultCache {
+    /**
+     * default limit on the size of the cache directory
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    /**
+     * default limit on the encoded size of the results kept in memory
+     */
+    public static final long DEFAULT_MEMORY_BYTES = 16L << 20;
+
+    /**
+     * first int of every cache file
+     */
+    private static final int MAGIC = 0x43545243;
+    private static final String SUFFIX = ".result";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxMemoryBytes;
+    /**
+     * encoded results by board hash, least recently used first
+     */
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    /**
+     * total size of the results in memory
+     */
+    private long memoryBytes;
+    /**
+     * total size of the files in directory, as far as this cache knows
+     */
+    private long diskBytes;
+    /**
+     * true while a thread is evicting files, so other threads leave it to that one
+     */
+    private boolean evicting = false;
+
+    private long memoryHits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+
+    /**
+     * Open a cache in the given directory, creating it if necessary.
+     *
+     * @param directory      where cached results are stored
+     * @param maxBytes       size the directory is kept under
+     * @param maxMemoryBytes size the results also kept in memory are kept under
+     * @throws IOException if the directory cannot be created or read
+     */
+    public ResultCache(Path directory, long maxBytes, long maxMemoryBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxMemoryBytes = maxMemoryBytes;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                diskBytes += Files.size(file);
+            }
+        }
+    }
+
+    /**
+     * Open a cache in the given directory with the default limits.
+     *
+     * @param directory where cached results are stored
+     * @throws IOException if the directory cannot be created or read
+     */
+    public ResultCache(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES, DEFAULT_MEMORY_BYTES);
+    }
+
+    /**
+     * Look up the shortest traces of a board.
+     *
+     * @param board board to look up
+     * @return the cached shortest traces on board, or null if it has not been cached
+     */
+    public ArrayList<TraceState> get(CircuitBoard board) {
+        String key = board.contentHash();
+        byte[] result;
+        synchronized (this) {
+            result = memory.get(key);
+            if (result != null) {
+                memoryHits++;
+            }
+        }
+        if (result != null) {   //decode outside the lock so other threads can use the cache meanwhile
+            return decode(board, result);
+        }
+        Path file = directory.resolve(key + SUFFIX);
+        try {
+            result = Files.readAllBytes(file);
+            ArrayList<TraceState> solutions = decode(board, result);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            synchronized (this) {
+                remember(key, result);
+                diskHits++;
+            }
+            return solutions;
+        } catch (IOException | RuntimeException e) {   //missing, unreadable or not a result for this board
+            synchronized (this) {
+                misses++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Add the shortest traces of a board to both tiers.
+     *
+     * @param board     board that was solved
+     * @param solutions every shortest trace on board, empty if there are none
+     */
+    public void put(CircuitBoard board, List<TraceState> solutions) {
+        try {
+            String key = board.contentHash();
+            byte[] result = encode(board, solutions, Math.min(maxBytes, Integer.MAX_VALUE - 8));
+            if (result == null) {
+                return;     //too large to cache
+            }
+            synchronized (this) {
+                remember(key, result);
+            }
+            store(key, result);
+        } catch (RuntimeException e) {
+            //the result is not cached
+        }
+    }
+
+    /**
+     * Add an encoded result to the memory tier, then forget the least
+     * recently used results until the tier is under its limit.
+     */
+    private void remember(String key, byte[] result) {
+        byte[] replaced = memory.put(key, result);
+        memoryBytes += result.length - ((replaced == null) ? 0 : replaced.length);
+        Iterator<byte[]> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Write an encoded result to its file, then evict files if the directory
+     * is over its limit. Called without the lock held.
+     */
+    private void store(String key, byte[] result) {
+        Path file = directory.resolve(key + SUFFIX);
+        Path temporary = null;
+        try {
+            long replaced = Files.exists(file) ? Files.size(file) : 0;
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, result);
+            try {   //readers and other processes sharing the directory never see a partly written file
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temporary = null;
+            boolean evict;
+            synchronized (this) {
+                diskBytes += result.length - replaced;
+                evict = diskBytes > maxBytes && !evicting;
+                evicting |= evict;
+            }
+            if (evict) {
+                evict();
+            }
+        } catch (IOException e) {
+            //the result stays in memory only
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    //left for the next run to overwrite or remove by hand
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used files until the directory is under its
+     * limit, correcting diskBytes from the directory listing. Called without
+     * the lock held, by one thread at a time - see evicting.
+     */
+    private void evict() throws IOException {
+        try {
+            long known;
+            synchronized (this) {
+                known = diskBytes;
+            }
+            ArrayList<Path> files = new ArrayList<Path>();
+            HashMap<Path, FileTime> lastUsed = new HashMap<Path, FileTime>();
+            long listed = 0;
+            try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                for (Path file : listing) {
+                    files.add(file);
+                    lastUsed.put(file, Files.getLastModifiedTime(file));
+                    listed += Files.size(file);
+                }
+            }
+            files.sort(Comparator.comparing(lastUsed::get));
+            for (int i = 0; i < files.size() && listed > maxBytes; i++) {
+                long size = Files.size(files.get(i));
+                if (Files.deleteIfExists(files.get(i))) {
+                    listed -= size;
+                }
+            }
+            synchronized (this) {   //keep what other threads stored meanwhile
+                diskBytes += listed - known;
+            }
+        } finally {
+            synchronized (this) {
+                evicting = false;
+            }
+        }
+    }
+
+    /**
+     * @return number of lookups answered from memory
+     */
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    /**
+     * @return number of lookups answered from the cache directory
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * @return number of lookups that found nothing
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    public synchronized String toString() {
+        return "cache: " + memoryHits + " memory hits, " + diskHits + " disk hits, " + misses + " misses";
+    }
+
+    /**
+     * Encode a board's size and solutions: the magic number, rows, columns,
+     * number of solutions and then each solution in TraceStateCodec form.
+     *
+     * @param limit largest encoded size to allow
+     * @return the encoded result, or null if it would be larger than limit
+     */
+    private static byte[] encode(CircuitBoard board, List<TraceState> solutions, long limit) {
+        TraceStateCodec codec = new TraceStateCodec(board);
+        long size = 4 * Integer.BYTES;
+        for (TraceState solution : solutions) {
+            size += codec.encodedSize(solution);
+            if (size > limit) {
+                return null;
+            }
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putInt(board.numRows()).putInt(board.numCols()).putInt(solutions.size());
+        for (TraceState solution : solutions) {
+            codec.encode(solution, out);
+        }
+        return out.array();
+    }
+
+    /**
+     * Rebuild the solutions encoded by encode().
+     *
+     * @throws IllegalArgumentException if result is not a result for a board of this size
+     */
+    private static ArrayList<TraceState> decode(CircuitBoard board, byte[] result) {
+        ByteBuffer in = ByteBuffer.wrap(result);
+        if (in.getInt() != MAGIC || in.getInt() != board.numRows() || in.getInt() != board.numCols()) {
+            throw new IllegalArgumentException("not a result for this board");
+        }
+        //counts and lengths are checked against the bytes left before anything is sized by them
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / (3 * Integer.BYTES)) {    //every solution takes at least 3 ints
+            throw new IllegalArgumentException("not a result for this board");
+        }
+        TraceStateCodec codec = new TraceStateCodec(board);
+        ArrayList<TraceState> solutions = new ArrayList<TraceState>(count);
+        for (int i = 0; i < count; i++) {
+            int length = in.getInt(in.position());
+            if (length < 1 || 3 * Integer.BYTES + (length + 2L) / 4 > in.remaining()) {
+                throw new IllegalArgumentException("not a result for this board");
+            }
+            solutions.add(codec.decode(in));
+        }
+        return solutions;
+    }
+
+} // class ResultCache
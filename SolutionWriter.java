@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes solved TraceStates to an output stream in the same format as
+ * printing TraceState.toString(), without building a CircuitBoard or a String
+ * for each one. The starting board is rendered once as a template of bytes;
+ * each solution copies the template into a reusable buffer and overwrites
+ * only the positions on its path with 'T'. The buffer is written out whenever
+ * the next solution would not fit, so memory use does not grow with the
+ * number of solutions written.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class SolutionWriter {
+    /**
+     * smallest output buffer, enough for many solutions of a small board
+     */
+    private static final int MIN_BUFFER = 1 << 16;
+
+    private final OutputStream out;
+    private final int COLS;
+    /**
+     * rendering of the starting board followed by the blank line between solutions
+     */
+    private final byte[] template;
+    private final byte[] buffer;
+    /**
+     * number of bytes waiting in buffer
+     */
+    private int count = 0;
+    /**
+     * number of solutions passed to write()
+     */
+    private long written = 0;
+
+    /**
+     * Prepare to write solutions of the given board.
+     *
+     * @param out   stream to write to
+     * @param board starting board shared by every solution that will be written
+     */
+    public SolutionWriter(OutputStream out, CircuitBoard board) {
+        this.out = out;
+        COLS = board.numCols();
+        byte[] separator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        template = new byte[board.numRows() * (2 * COLS + 1) + separator.length];
+        int index = 0;
+        for (int row = 0; row < board.numRows(); row++) {
+            for (int col = 0; col < COLS; col++) {
+                template[index++] = (byte) board.charAt(row, col);
+                template[index++] = ' ';
+            }
+            template[index++] = '\n';
+        }
+        System.arraycopy(separator, 0, template, index, separator.length);
+        buffer = new byte[Math.max(MIN_BUFFER, template.length)];
+    }
+
+    /**
+     * Add a solution to the output.
+     *
+     * @param solution TraceState on the board this writer was created for
+     */
+    public void write(TraceState solution) {
+        if (buffer.length - count < template.length) {
+            drain();
+        }
+        System.arraycopy(template, 0, buffer, count, template.length);
+        for (TraceState state = solution; state != null; state = state.getPrevious()) {
+            buffer[count + state.getRow() * (2 * COLS + 1) + 2 * state.getCol()] = 'T';
+        }
+        count += template.length;
+        written++;
+    }
+
+    /**
+     * @return the number of solutions written so far, streamed during the search or not
+     */
+    public long getSolutionsWritten() {
+        return written;
+    }
+
+    /**
+     * Write out everything buffered so far and flush the stream.
+     */
+    public void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the buffered bytes to the stream and empty the buffer.
+     */
+    private void drain() {
+        try {
+            out.write(buffer, 0, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count = 0;
+    }
+
+} // class SolutionWriter
@@ -1,4 +1,15 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Stack;
 
@@ -15,13 +26,49 @@ import java.util.Stack;
  */
 public class Storage<T> 
 {
-	/** supported underlying data structures for Storage to use */
-	public static enum DataStructure {stack, queue}
+	/** supported underlying data structures for Storage to use -
+	 *  arrayStack and arrayQueue keep their elements in a growable circular
+	 *  array, so they allocate no node per element and take no locks,
+	 *  priority retrieves the smallest element first from a binary heap,
+	 *  spillStack and spillQueue keep a bounded number of elements in memory
+	 *  and move the rest to memory-mapped temporary files */
+	public static enum DataStructure {stack, queue, arrayStack, arrayQueue, priority, spillStack, spillQueue}
+	/** Converts elements to and from a compact binary form, so that
+	 *  spillStack and spillQueue can move them out of the heap */
+	public static interface Codec<T>
+	{
+		/** @param element T to encode
+		 *  @return number of bytes encode() writes for element */
+		int encodedSize(T element);
+
+		/** Write element at the position of out, advancing it
+		 *  @param element T to encode
+		 *  @param out buffer with at least encodedSize(element) bytes remaining */
+		void encode(T element, ByteBuffer out);
+
+		/** Read the next element at the position of in, advancing it
+		 *  @param in buffer positioned at an encoded element
+		 *  @return the decoded T */
+		T decode(ByteBuffer in);
+	}
+	/** elements kept in memory by default before spillStack and spillQueue write some to disk */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 18;
+
 	/** the data structure chosen for this Storage to use */
 	private DataStructure dataStructure;
 	/** the data structures - only one will be instantiated and used  */
 	private Queue<T> queue;
 	private Stack<T> stack;
+	private ArrayDeque<T> deque;
+	/** spillStack and spillQueue: encoding for spilled elements, number of
+	 *  elements per spilled segment, spilled segments from oldest to newest,
+	 *  the segment spillQueue is reading from and how many elements are
+	 *  spilled in all */
+	private Codec<T> codec;
+	private int segmentSize;
+	private ArrayDeque<ByteBuffer> spilled;
+	private ByteBuffer reading;
+	private long spilledCount;
 	
 	/** Constructor
 	 * @param dataStructure choice of DataStructures 
@@ -36,9 +83,56 @@ public class Storage<T>
 				break;
 			case queue:
 				queue = new LinkedList<T>();
+				break;
+			case arrayStack:
+			case arrayQueue:
+				deque = new ArrayDeque<T>();
+				break;
+			case priority:
+				throw new IllegalArgumentException(dataStructure + " needs a Comparator");
+			case spillStack:
+			case spillQueue:
+				throw new IllegalArgumentException(dataStructure + " needs a Codec");
 		}
 	}
 
+	/** Constructor for an ordered Storage
+	 * @param dataStructure priority
+	 * @param order ordering of elements, smallest element retrieved first
+	 */
+	public Storage(DataStructure dataStructure, Comparator<? super T> order)
+	{
+		if (dataStructure != DataStructure.priority)
+		{
+			throw new IllegalArgumentException(dataStructure + " is not ordered");
+		}
+		this.dataStructure = dataStructure;
+		queue = new PriorityQueue<T>(order);
+	}
+
+	/** Constructor for a Storage that spills to disk
+	 * @param dataStructure spillStack or spillQueue
+	 * @param codec encoding for the elements written to disk
+	 * @param segmentSize number of elements written to each temporary file -
+	 *        at most about two segments of elements stay in memory
+	 */
+	public Storage(DataStructure dataStructure, Codec<T> codec, int segmentSize)
+	{
+		if (dataStructure != DataStructure.spillStack && dataStructure != DataStructure.spillQueue)
+		{
+			throw new IllegalArgumentException(dataStructure + " does not spill to disk");
+		}
+		if (segmentSize < 1)
+		{
+			throw new IllegalArgumentException("segment size " + segmentSize);
+		}
+		this.dataStructure = dataStructure;
+		this.codec = codec;
+		this.segmentSize = segmentSize;
+		deque = new ArrayDeque<T>();
+		spilled = new ArrayDeque<ByteBuffer>();
+	}
+
 	/** Alternative to using the constructor returns
  	 * a Storage already configured to use a Stack
  	 * @return instance of Storage configured to use a Stack
@@ -57,6 +151,27 @@ public class Storage<T>
 		return new Storage<E>(DataStructure.queue);
 	}
 	
+	/** Alternative to using the constructor returns
+ 	 * a Storage already configured to use a priority queue
+ 	 * @param order ordering of elements, smallest retrieved first
+ 	 * @return instance of Storage configured to use a priority queue
+ 	 */
+	public static <E> Storage<E> getPriorityInstance(Comparator<? super E> order)
+	{
+		return new Storage<E>(DataStructure.priority, order);
+	}
+
+	/** Alternative to using the constructor returns
+	 * a Storage that spills to disk with the default segment size
+	 * @param dataStructure spillStack or spillQueue
+	 * @param codec encoding for the elements written to disk
+	 * @return instance of Storage configured to spill to disk
+	 */
+	public static <E> Storage<E> getSpillingInstance(DataStructure dataStructure, Codec<E> codec)
+	{
+		return new Storage<E>(dataStructure, codec, DEFAULT_SEGMENT_SIZE);
+	}
+
 	/** Add element to underlying data structure
 	 * @param element T to store
 	 */
@@ -68,7 +183,28 @@ public class Storage<T>
 				stack.push(element);
 				break;
 			case queue:
+			case priority:
 				queue.add(element);
+				break;
+			case arrayStack:
+				deque.addFirst(element);
+				break;
+			case arrayQueue:
+				deque.addLast(element);
+				break;
+			case spillStack:
+				deque.addFirst(element);
+				if (deque.size() >= 2 * segmentSize)	//keep the newest segment in memory to pop from
+				{
+					spill(segmentSize);
+				}
+				break;
+			case spillQueue:
+				deque.addLast(element);
+				if (deque.size() >= segmentSize)
+				{
+					spill(segmentSize);
+				}
 		}
 	}
 	
@@ -84,7 +220,39 @@ public class Storage<T>
 				next = stack.pop();
 				break;
 			case queue:
+			case priority:
 				next = queue.remove();
+				break;
+			case arrayStack:
+			case arrayQueue:
+				next = deque.removeFirst();
+				break;
+			case spillStack:
+				if (deque.isEmpty() && !spilled.isEmpty())
+				{
+					ByteBuffer segment = spilled.removeLast();
+					while (segment.hasRemaining())	//oldest first, so the newest ends up on top
+					{
+						deque.addFirst(codec.decode(segment));
+						spilledCount--;
+					}
+				}
+				next = deque.removeFirst();
+				break;
+			case spillQueue:
+				if ((reading == null || !reading.hasRemaining()) && !spilled.isEmpty())
+				{
+					reading = spilled.removeFirst();
+				}
+				if (reading != null && reading.hasRemaining())	//spilled elements are older than those in memory
+				{
+					next = codec.decode(reading);
+					spilledCount--;
+				}
+				else
+				{
+					next = deque.removeFirst();
+				}
 		}
 		
 		return next;
@@ -100,7 +268,16 @@ public class Storage<T>
 				result = stack.isEmpty();
 				break;
 			case queue:
+			case priority:
 				result = queue.isEmpty();
+				break;
+			case arrayStack:
+			case arrayQueue:
+				result = deque.isEmpty();
+				break;
+			case spillStack:
+			case spillQueue:
+				result = deque.isEmpty() && spilledCount == 0;
 		}
 		return result;
 	}
@@ -115,8 +292,53 @@ public class Storage<T>
 				size = stack.size();
 				break;
 			case queue:
+			case priority:
 				size = queue.size();
+				break;
+			case arrayStack:
+			case arrayQueue:
+				size = deque.size();
+				break;
+			case spillStack:
+			case spillQueue:
+				size = (int) Math.min(Integer.MAX_VALUE, deque.size() + spilledCount);
 		} 
 		return size;
 	}
+
+	/** Move the count oldest elements in memory to a new memory-mapped
+	 *  temporary file. The file is deleted as soon as it is mapped, so its
+	 *  space is released once the mapping is no longer used.
+	 * @param count number of elements to spill
+	 */
+	private void spill(int count)
+	{
+		boolean stack = (dataStructure == DataStructure.spillStack);
+		Iterator<T> oldestFirst = stack ? deque.descendingIterator() : deque.iterator();
+		long bytes = 0;
+		for (int i = 0; i < count; i++)
+		{
+			bytes += codec.encodedSize(oldestFirst.next());
+		}
+		try
+		{
+			Path file = Files.createTempFile("storage", ".spill");
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE))
+			{
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+				for (int i = 0; i < count; i++)
+				{
+					codec.encode(stack ? deque.removeLast() : deque.removeFirst(), buffer);
+				}
+				buffer.flip();
+				spilled.addLast(buffer);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		spilledCount += count;
+	}
 } // class Storage
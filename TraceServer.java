@@ -0,0 +1,423 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Local HTTP service that solves boards sent to it, so other programs can use
+ * the tracer without starting a JVM for every board. It is built on the JDK's
+ * com.sun.net.httpserver and handles each request on its own virtual thread,
+ * while the searches themselves run on platform threads.
+ *
+ * POST a board, in the same text format as a .dat file, to
+ * <ul>
+ * <li>/solve?mode=q - every shortest trace, exactly as java CircuitTracer -q -c
+ * would print them. mode is any of s, q, a, i, d or m (default d), and
+ * bounded=true adds -b.</li>
+ * <li>/count - the number of shortest traces and their length, as with -n.</li>
+ * </ul>
+ * GET /stats reports the number of requests, rejections and timeouts, and
+ * the 50th, 90th and 99th percentile and longest latencies of recent requests.
+ *
+ * A board that fails CircuitBoard's validation is answered with 400 and the
+ * InvalidFileFormatException message, and one with more bytes or positions
+ * than the server accepts with 413. Only a limited number of boards are
+ * parsed and solved at once; a request that cannot start within its timeout
+ * gets 503, and a search that runs past the timeout is interrupted and
+ * answered with 504.
+ *
+ * To RUN: java TraceServer [-l port] [-t solves] [-w milliseconds] [-r cache]
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class TraceServer {
+    private static final int DEFAULT_PORT = 8221;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+    /**
+     * largest board accepted, in bytes of text
+     */
+    private static final int MAX_BOARD_BYTES = 16 << 20;
+    /**
+     * largest board accepted, in positions - as many as the largest text board holds, checked
+     * before the board is allocated since a binary board of a few bytes can have any number
+     */
+    private static final long MAX_BOARD_POSITIONS = MAX_BOARD_BYTES / 2;
+    /**
+     * number of recent latencies the percentiles are taken from
+     */
+    private static final int LATENCY_SAMPLES = 10_000;
+    private static final String DEFAULT_MODE = "d";
+    private static final String MODES = "sqaidm";
+
+    /**
+     * Start a server and keep running until the process is stopped.
+     *
+     * @param args port, concurrent solves, timeout and cache options
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int solves = Runtime.getRuntime().availableProcessors();
+        long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        String cacheDirectory = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-l":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                        solves = Integer.parseInt(args[++i]);
+                        break;
+                    case "-w":
+                        timeoutMillis = Long.parseLong(args[++i]);
+                        break;
+                    case "-r":
+                        cacheDirectory = args[++i];
+                        break;
+                    default:
+                        printUsage();
+                        return;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            printUsage();
+            return;
+        }
+        if (solves < 1 || timeoutMillis < 1) {
+            printUsage();
+            return;
+        }
+        try {
+            ResultCache cache = (cacheDirectory == null) ? null : new ResultCache(Paths.get(cacheDirectory));
+            TraceServer server = new TraceServer(new InetSocketAddress(port), solves, timeoutMillis, cache);
+            server.start();
+            System.out.println("TraceServer listening on http://localhost:" + server.getPort() + "/");
+        } catch (IOException e) {
+            System.err.println(CircuitTracer.errorMessage(e));
+        }
+    }
+
+    /**
+     * Print instructions for running TraceServer from the command line.
+     */
+    private static void printUsage() {
+        System.out.println("To USE: java TraceServer [options]");
+        System.out.println("options: -l <port> port to listen on (default: " + DEFAULT_PORT + "),");
+        System.out.println("         -t <solves> number of boards solved at once (default: one per processor),");
+        System.out.println("         -w <milliseconds> longest a request may take (default: " + DEFAULT_TIMEOUT_MILLIS + "),");
+        System.out.println("         -r <directory> reuse and save results in a cache directory.");
+        System.out.println("then:    curl --data-binary @boards/valid1.dat 'http://localhost:" + DEFAULT_PORT + "/solve?mode=q'");
+        System.out.println("         curl --data-binary @boards/valid1.dat http://localhost:" + DEFAULT_PORT + "/count");
+        System.out.println("         curl http://localhost:" + DEFAULT_PORT + "/stats");
+    }
+
+    private final HttpServer server;
+    private final long timeoutMillis;
+    /**
+     * results shared by all requests, null if not caching
+     */
+    private final ResultCache cache;
+    /**
+     * number of boards solved at once
+     */
+    private final int solves;
+    /**
+     * one permit for each board that may be solved at once
+     */
+    private final Semaphore solvePermits;
+    /**
+     * runs each solve on its own platform thread, so a request can stop waiting for it - a search
+     * never blocks, so on a virtual thread it would hold its carrier thread until it finished and
+     * the requests waiting on that carrier could not time out
+     */
+    private final ExecutorService solvers = Executors.newThreadPerTaskExecutor(
+            Thread.ofPlatform().name("TraceServer-solver-", 0).daemon(true).factory());
+
+    /**
+     * latencies of the most recent requests in milliseconds, a ring overwritten from latencyCount % LATENCY_SAMPLES
+     */
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long latencyCount = 0;
+    private long rejected = 0;
+    private long timedOut = 0;
+
+    /**
+     * Create a server; it does not accept requests until start().
+     *
+     * @param address       address and port to listen on, port 0 for any free port
+     * @param solves        number of boards solved at once
+     * @param timeoutMillis longest a request may wait for and run its solve
+     * @param cache         cache to look up and save results in, null for none
+     * @throws IOException if the port cannot be opened
+     */
+    public TraceServer(InetSocketAddress address, int solves, long timeoutMillis, ResultCache cache) throws IOException {
+        this.timeoutMillis = timeoutMillis;
+        this.cache = cache;
+        this.solves = solves;
+        solvePermits = new Semaphore(solves);
+        server = HttpServer.create(address, 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/solve", exchange -> handle(exchange, false));
+        server.createContext("/count", exchange -> handle(exchange, true));
+        server.createContext("/stats", this::stats);
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests and interrupt any solves still running.
+     */
+    public void stop() {
+        server.stop(0);
+        solvers.shutdownNow();
+    }
+
+    /**
+     * @return port the server is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answer a /solve or /count request.
+     *
+     * @param exchange request and response
+     * @param count    true for /count
+     */
+    private void handle(HttpExchange exchange, boolean count) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "Send the board with POST.");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String mode = query.getOrDefault("mode", DEFAULT_MODE).replace("-", "");
+            if (mode.length() != 1 || MODES.indexOf(mode.charAt(0)) < 0) {
+                respond(exchange, 400, "Unknown mode " + mode + ", use one of s, q, a, i, d or m.");
+                return;
+            }
+            byte[] contents = exchange.getRequestBody().readNBytes(MAX_BOARD_BYTES + 1);
+            if (contents.length > MAX_BOARD_BYTES) {
+                respond(exchange, 413, "Boards are limited to " + MAX_BOARD_BYTES + " bytes.");
+                return;
+            }
+            boolean bounded = Boolean.parseBoolean(query.get("bounded"));
+            solve(exchange, contents, count ? "-n" : "-" + mode, bounded, start);
+        } catch (BoardTooLargeException e) {
+            respond(exchange, 413, e.getMessage());
+        } catch (InvalidFileFormatException e) {
+            respond(exchange, 400, e.getMessage());
+        } catch (RuntimeException | Error e) {  //an Error never takes the handler thread down with it
+            respond(exchange, 500, CircuitTracer.errorMessage(e));
+        } finally {     //closed only here, since try-with-resources would close it before the error responses
+            exchange.close();
+            recordLatency(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Parse and solve a board within the request's time limit, then send the
+     * result. The board is parsed only once a solve permit is held, so no
+     * more boards are in memory than are solved at once.
+     *
+     * @param exchange   request and response
+     * @param contents   board file sent with the request
+     * @param searchMode CircuitTracer search option, or -n to count
+     * @param bounded    true for a bounded search
+     * @param start      System.nanoTime() when the request arrived
+     * @throws BoardTooLargeException     if the board has more than MAX_BOARD_POSITIONS positions
+     * @throws InvalidFileFormatException if the board is not valid
+     */
+    private void solve(HttpExchange exchange, byte[] contents, String searchMode, boolean bounded, long start) throws IOException {
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            if (!solvePermits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                synchronized (this) {
+                    rejected++;
+                }
+                respond(exchange, 503, "Too many boards are being solved, try again later.");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        CircuitBoard board;
+        try {
+            board = BoardLoader.parse("request", contents, MAX_BOARD_POSITIONS);
+        } catch (Throwable e) {
+            solvePermits.release();
+            throw e;
+        }
+        Future<byte[]> result;
+        try {
+            result = solvers.submit(() -> {
+                try {   //the permit is held until the search really stops, even after a timeout
+                    return searchMode.equals("-n") ? count(board) : trace(board, searchMode, bounded);
+                } finally {
+                    solvePermits.release();
+                }
+            });
+        } catch (RuntimeException e) {      //server stopped
+            solvePermits.release();
+            throw e;
+        }
+        try {
+            respond(exchange, 200, result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            result.cancel(true);    //interrupts the search
+            synchronized (this) {
+                timedOut++;
+            }
+            respond(exchange, 504, "The board took longer than " + timeoutMillis + " ms to solve.");
+        } catch (ExecutionException e) {
+            respond(exchange, 500, CircuitTracer.errorMessage(e.getCause()));
+        } catch (InterruptedException | CancellationException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return every shortest trace, as java CircuitTracer -c prints them
+     */
+    private byte[] trace(CircuitBoard board, String searchMode, boolean bounded) {
+        ArrayList<TraceState> solutions = (cache == null) ? null : cache.get(board);
+        if (solutions == null) {
+            solutions = CircuitTracer.solve(board, searchMode, bounded, false, 1);
+            if (cache != null) {
+                cache.put(board, solutions);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SolutionWriter writer = new SolutionWriter(out, board);
+        for (TraceState solution : solutions) {
+            writer.write(solution);
+        }
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the number of shortest traces and their length, as java CircuitTracer -n -c prints them
+     */
+    private byte[] count(CircuitBoard board) {
+        DistanceFieldTracer tracer = new DistanceFieldTracer(board);
+        BigInteger solutions = tracer.countShortestPaths();
+        String result = "There are " + solutions + " solutions." + System.lineSeparator();
+        if (tracer.shortestPathLength() > 0) {
+            result += "Shortest Path: " + tracer.shortestPathLength() + System.lineSeparator();
+        }
+        return result.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Answer a /stats request with the request counts and latency percentiles.
+     */
+    private void stats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long[] recent;
+            long requests;
+            long rejectedCount;
+            long timedOutCount;
+            synchronized (this) {
+                requests = latencyCount;
+                recent = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+                rejectedCount = rejected;
+                timedOutCount = timedOut;
+            }
+            Arrays.sort(recent);
+            String report = "requests: " + requests + System.lineSeparator()
+                    + "solving: " + (solves - solvePermits.availablePermits()) + System.lineSeparator()
+                    + "rejected: " + rejectedCount + System.lineSeparator()
+                    + "timed out: " + timedOutCount + System.lineSeparator()
+                    + "latency ms (last " + recent.length + "): p50 " + percentile(recent, 50) + ", p90 " + percentile(recent, 90)
+                    + ", p99 " + percentile(recent, 99) + ", max " + percentile(recent, 100) + System.lineSeparator();
+            respond(exchange, 200, report);
+        }
+    }
+
+    /**
+     * @param sorted  latencies in increasing order
+     * @param percent percentile to find, 100 for the largest
+     * @return the latency that percent of the requests took no longer than, 0 if there are none
+     */
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);   //nearest-rank method
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Add a request's latency to the recent samples.
+     */
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (latencyCount % LATENCY_SAMPLES)] = TimeUnit.NANOSECONDS.toMillis(nanos);
+        latencyCount++;
+    }
+
+    /**
+     * Split a raw query string such as mode=q&amp;bounded=true into its parameters.
+     */
+    private static Map<String, String> parseQuery(String query) {
+        HashMap<String, String> parameters = new HashMap<String, String>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = (equals < 0) ? parameter : parameter.substring(0, equals);
+            String value = (equals < 0) ? "true" : parameter.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Send a plain text response.
+     */
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send a plain text response.
+     */
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, (body.length == 0) ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+} // class TraceServer
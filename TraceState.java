@@ -1,96 +1,185 @@
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * Represents a potential path through a CircuitBoard - a search state for CircuitTracer.
- * 
+ *
+ * States are persistent: a new state only links back to the state it extends
+ * and keeps a compact bit set of the positions already traced, while every
+ * state in a search shares one unmodified copy of the starting board. The
+ * board with its 'T's and the list of path points are rebuilt on demand by
+ * getBoard(), getPath() and toString().
+ *
  * @author mvail
  */
 public class TraceState {
-	private CircuitBoard board;		//state of the current board
-	private ArrayList<Point> path;	//history of traces added
-	
+	/** Best-first ordering: smallest minSolutionLength() first, and the longer path on ties */
+	public static final Comparator<TraceState> BEST_FIRST =
+			Comparator.comparingInt(TraceState::minSolutionLength).thenComparingInt(state -> -state.pathLength());
+
+	private final CircuitBoard board;	//starting board shared by every state in this search
+	private final TraceState previous;	//state this one extends, null for an initial state
+	private final int row;				//row of the last point in the path
+	private final int col;				//column of the last point in the path
+	private final int length;			//number of points in the path
+	private final long[] traced;		//bit set of positions in the path, indexed by row * numCols + col
+
 	/** Initial state with the trace path beginning at given row and column
-	 * @param startingBoard 
+	 * @param startingBoard
 	 * @param row initial path row
 	 * @param col initial path column
 	 */
 	public TraceState(CircuitBoard startingBoard, int row, int col) {
+		if (!startingBoard.isOpen(row, col)) {
+			throw new OccupiedPositionException("row " + row + ", col " + col + "contains '" + startingBoard.charAt(row, col) + "'");
+		}
 		board = new CircuitBoard(startingBoard);
-		path = new ArrayList<Point>();
-		board.makeTrace(row, col); //will throw exception if row, col is occupied
-		path.add(new Point(row, col));
+		previous = null;
+		this.row = row;
+		this.col = col;
+		length = 1;
+		traced = new long[(board.numRows() * board.numCols() + 63) / 64];
+		mark(row, col);
 	}
-	
+
 	/** New state adding given row and column position to the path from previous state
 	 * @param previousState
 	 * @param row row of next point to add to the path
 	 * @param col column of next point to add to the path
 	 */
 	public TraceState(TraceState previousState, int row, int col) {
-		board = new CircuitBoard(previousState.board);
-		path = new ArrayList<Point>(previousState.path);
-		board.makeTrace(row, col); //will throw exception if row, col is occupied
-		path.add(new Point(row, col));
+		if (!previousState.isOpen(row, col)) {
+			throw new OccupiedPositionException("row " + row + ", col " + col + "contains '" + previousState.charAt(row, col) + "'");
+		}
+		board = previousState.board;
+		previous = previousState;
+		this.row = row;
+		this.col = col;
+		length = previousState.length + 1;
+		traced = Arrays.copyOf(previousState.traced, previousState.traced.length);
+		mark(row, col);
+	}
+
+	/** Record given position as part of this state's path
+	 * @param row row of position to mark
+	 * @param col column of position to mark
+	 */
+	private void mark(int row, int col) {
+		int index = row * board.numCols() + col;
+		traced[index >>> 6] |= 1L << index;
+	}
+
+	/** @return true if given in-bounds position is part of this state's path */
+	private boolean isTraced(int row, int col) {
+		int index = row * board.numCols() + col;
+		return (traced[index >>> 6] & (1L << index)) != 0;
 	}
-	
+
+	/** @return char at given position in this state's board, including 'T's */
+	private char charAt(int row, int col) {
+		if (row < 0 || row >= board.numRows() || col < 0 || col >= board.numCols()) {
+			return ' ';
+		}
+		return isTraced(row, col) ? 'T' : board.charAt(row, col);
+	}
+
 	/** Indicates if a position is open in this state's board
 	 * @param row row of position to check
 	 * @param col column of position to check
 	 * @return true if given row and column position is open
 	 */
 	public boolean isOpen(int row, int col) {
-		return board.isOpen(row, col);
+		return board.isOpen(row, col) && !isTraced(row, col);
 	}
-	
+
 	/** @return path length */
 	public int pathLength() {
-		return path.size();
+		return length;
 	}
-	
+
 	/** @return row of the last point in the path */
 	public int getRow() {
-		return path.get(path.size()-1).x;
+		return row;
 	}
-	
+
 	/** @return column of the last point in the path */
 	public int getCol() {
-		return path.get(path.size()-1).y;
+		return col;
+	}
+
+	/** @return state this one extends by one position, null for an initial state */
+	public TraceState getPrevious() {
+		return previous;
 	}
-	
+
 	/** @return the current CircuitBoard from this state with the path filled in with 'T's */
 	public CircuitBoard getBoard() {
-		return new CircuitBoard(board);
+		CircuitBoard current = new CircuitBoard(board);
+		for (TraceState state = this; state != null; state = state.previous) {
+			current.makeTrace(state.row, state.col);
+		}
+		return current;
 	}
-	
+
 	/** @return list of row, column points that make up the path */
 	public ArrayList<Point> getPath() {
-		return new ArrayList<Point>(path);
+		Point[] points = new Point[length];
+		for (TraceState state = this; state != null; state = state.previous) {
+			points[state.length - 1] = new Point(state.row, state.col);
+		}
+		return new ArrayList<Point>(Arrays.asList(points));
 	}
-	
-	/** @return true if path ends adjacent to ending component */
-	public boolean isSolution() {
-		Point p1 = path.get(path.size()-1);
+
+	/** Lower bound on the length of any solution that extends this state - the
+	 * current path length plus the Manhattan distance still to be traced before
+	 * the path ends adjacent to the ending component
+	 * @return smallest path length a solution reached from this state could have
+	 */
+	public int minSolutionLength() {
 		Point p2 = board.getEndingPoint();
-		if (p1.x-1 == p2.x && p1.y == p2.y) {
-			return true;
-		}
-		if (p1.x+1 == p2.x && p1.y == p2.y) {
-			return true;
-		}
-		if (p1.x == p2.x && p1.y-1 == p2.y) {
-			return true;
+		return length + Math.abs(row - p2.x) + Math.abs(col - p2.y) - 1;
+	}
+
+	/** Create every state that extends this path by one open position, ordered
+	 * by minSolutionLength() with the most promising state last, so that a
+	 * stack retrieves it first
+	 * @param children array with room for at least 4 states to fill
+	 * @return number of states placed at the front of children
+	 */
+	public int nextStates(TraceState[] children) {
+		int count = 0;
+		for (int i = -1; i < 2; i += 2) {
+			if (isOpen(row + i, col)) {
+				children[count++] = new TraceState(this, row + i, col);
+			}
+			if (isOpen(row, col + i)) {
+				children[count++] = new TraceState(this, row, col + i);
+			}
 		}
-		if (p1.x == p2.x && p1.y+1 == p2.y) {
-			return true;
+		for (int i = 1; i < count; i++) {	//insertion sort, longest lower bound first
+			TraceState child = children[i];
+			int j = i - 1;
+			while (j >= 0 && children[j].minSolutionLength() < child.minSolutionLength()) {
+				children[j + 1] = children[j];
+				j--;
+			}
+			children[j + 1] = child;
 		}
-		return false;
+		return count;
 	}
-	
+
+	/** @return true if path ends adjacent to ending component */
+	public boolean isSolution() {
+		Point p2 = board.getEndingPoint();
+		return Math.abs(row - p2.x) + Math.abs(col - p2.y) == 1;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
 	public String toString() {
-		return board.toString();
+		return getBoard().toString();
 	}
 }
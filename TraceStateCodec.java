@@ -0,0 +1,148 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Binary encoding of TraceStates for the Storage data structures that spill
+ * to disk. A state is written as its path: the length and first position,
+ * then each later step as a 2-bit direction, four steps to a byte. Decoding
+ * rebuilds the chain of states along the path. States are usually decoded
+ * next to states with the same beginning, so the states of the previously
+ * decoded path are reused for as long as the two paths agree, and decoded
+ * states share their common ancestors just as the originals did.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class TraceStateCodec implements Storage.Codec<TraceState> {
+    //step directions, as stored in the encoding
+    private static final int UP = 0;
+    private static final int DOWN = 1;
+    private static final int LEFT = 2;
+    private static final int RIGHT = 3;
+
+    /**
+     * approximate heap size of a TraceState and the header of its bit set
+     */
+    private static final long STATE_BYTES = 64;
+    /**
+     * fewest states to spill at a time, so temporary files are not too small
+     */
+    private static final int MIN_SEGMENT_SIZE = 1024;
+
+    private final CircuitBoard board;
+    /**
+     * positions of the path last decoded, first step first, as row * numCols + col
+     */
+    private int[] path = new int[16];
+    /**
+     * states of the path last decoded, states[i] ends at path[i]
+     */
+    private TraceState[] states = new TraceState[16];
+    /**
+     * number of states of the last decoded path still valid in states
+     */
+    private int decodedLength = 0;
+
+    /**
+     * Prepare to encode and decode states of a search of the given board.
+     *
+     * @param board starting board of every state that will be encoded
+     */
+    public TraceStateCodec(CircuitBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Choose how many states to spill at a time so that the states a spilling
+     * Storage keeps in memory take up about a quarter of the given heap.
+     * Each state is estimated at twice the size of a TraceState and its bit
+     * set, to leave room for the ancestors it keeps alive.
+     *
+     * @param heapBytes heap available to the search, such as Runtime.maxMemory()
+     * @return segment size for the spilling Storage constructor
+     */
+    public int segmentSize(long heapBytes) {
+        long stateBytes = 2 * (STATE_BYTES + Long.BYTES * (((long) board.numRows() * board.numCols() + 63) / 64));
+        return (int) Math.max(MIN_SEGMENT_SIZE, Math.min(Storage.DEFAULT_SEGMENT_SIZE, heapBytes / 8 / stateBytes));
+    }
+
+    @Override
+    public int encodedSize(TraceState state) {
+        return 3 * Integer.BYTES + (state.pathLength() + 2) / 4;
+    }
+
+    @Override
+    public void encode(TraceState state, ByteBuffer out) {
+        int length = state.pathLength();
+        int[] rows = new int[length];
+        int[] cols = new int[length];
+        int i = length;
+        for (TraceState step = state; step != null; step = step.getPrevious()) {
+            i--;
+            rows[i] = step.getRow();
+            cols[i] = step.getCol();
+        }
+        out.putInt(length);
+        out.putInt(rows[0]);
+        out.putInt(cols[0]);
+        int packed = 0;
+        for (i = 1; i < length; i++) {
+            int direction;
+            if (rows[i] < rows[i - 1]) {
+                direction = UP;
+            } else if (rows[i] > rows[i - 1]) {
+                direction = DOWN;
+            } else if (cols[i] < cols[i - 1]) {
+                direction = LEFT;
+            } else {
+                direction = RIGHT;
+            }
+            packed |= direction << (2 * ((i - 1) % 4));
+            if ((i - 1) % 4 == 3 || i == length - 1) {
+                out.put((byte) packed);
+                packed = 0;
+            }
+        }
+    }
+
+    @Override
+    public TraceState decode(ByteBuffer in) {
+        int length = in.getInt();
+        int row = in.getInt();
+        int col = in.getInt();
+        if (path.length < length) {
+            path = Arrays.copyOf(path, Math.max(length, 2 * path.length));
+            states = Arrays.copyOf(states, path.length);
+        }
+        int packed = 0;
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                if ((i - 1) % 4 == 0) {
+                    packed = in.get();
+                }
+                switch ((packed >>> (2 * ((i - 1) % 4))) & 3) {
+                    case UP:
+                        row--;
+                        break;
+                    case DOWN:
+                        row++;
+                        break;
+                    case LEFT:
+                        col--;
+                        break;
+                    default:
+                        col++;
+                }
+            }
+            int position = row * board.numCols() + col;
+            if (i < decodedLength && path[i] == position) {     //same beginning as the last path decoded
+                continue;
+            }
+            path[i] = position;
+            states[i] = (i == 0) ? new TraceState(board, row, col) : new TraceState(states[i - 1], row, col);
+            decodedLength = i + 1;
+        }
+        decodedLength = Math.max(decodedLength, length);
+        return states[length - 1];
+    }
+
+} // class TraceStateCodec
@@ -0,0 +1,109 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the phases of a solve, so a recording
+ * shows board loading, searching and writing solutions next to the GC and
+ * allocation events of the same period. Start a recording with, for example,
+ * java -XX:StartFlightRecording:filename=trace.jfr CircuitTracer -q -c board.dat
+ * and the events appear under CircuitTracer in JDK Mission Control or
+ * jfr print --categories CircuitTracer trace.jfr.
+ *
+ * Events that are not enabled in the recording cost next to nothing, so the
+ * tracer always creates them.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public final class TracerEvents {
+
+    private TracerEvents() {
+    }
+
+    /**
+     * Reading and validating a board file.
+     */
+    @Name("circuittracer.BoardLoad")
+    @Label("Board Load")
+    @Category("CircuitTracer")
+    @Description("Reading and validating a board file")
+    static class BoardLoadEvent extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int cols;
+
+        @Label("File Size")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * One search of a board, from the initial states to the last solution.
+     */
+    @Name("circuittracer.Search")
+    @Label("Search")
+    @Category("CircuitTracer")
+    @Description("Finding every shortest trace on one board")
+    static class SearchEvent extends Event {
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int cols;
+
+        @Label("Strategy")
+        @Description("Command line option of the search, such as -q or -d")
+        String strategy;
+
+        @Label("States Expanded")
+        long statesExpanded;
+
+        @Label("Solutions")
+        long solutions;
+
+        @Label("Result Length")
+        @Description("Number of positions in a shortest trace, 0 if there is none")
+        int resultLength;
+    }
+
+    /**
+     * Rendering solutions and writing them out after a search. Solutions
+     * written while a -q, -a, -i, -d, -m or -j search is still running are part
+     * of its search event instead.
+     */
+    @Name("circuittracer.SolutionOutput")
+    @Label("Solution Output")
+    @Category("CircuitTracer")
+    @Description("Rendering and writing the solutions of one board")
+    static class SolutionOutputEvent extends Event {
+        @Label("Board")
+        String board;
+
+        @Label("Solutions")
+        long solutions;
+    }
+
+    /**
+     * Size of a queue search's frontier when it starts on a new path length.
+     */
+    @Name("circuittracer.Frontier")
+    @Label("Frontier")
+    @Category("CircuitTracer")
+    @Description("Number of states of one path length that a breadth-first search holds when it reaches that length")
+    static class FrontierEvent extends Event {
+        @Label("Path Length")
+        int pathLength;
+
+        @Label("States")
+        long states;
+    }
+
+} // class TracerEvents
@@ -0,0 +1,235 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timings of one solve: how many TraceStates the search created,
+ * expanded and pruned, the most it held in storage at once, how many
+ * solutions it found, the time spent loading the board, searching and writing
+ * solutions, and the bytes allocated on the tracing thread.
+ *
+ * The counters are published by the tracing thread every so often and may be
+ * read at any time from other threads. Once registered, they can be watched live over JMX as
+ * CircuitTracer:type=TracerStats, which is how to spot a slow board without
+ * attaching a profiler.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public class TracerStats implements TracerStatsMBean {
+    /**
+     * name the stats of the current solve are registered under
+     */
+    public static final String OBJECT_NAME = "CircuitTracer:type=TracerStats";
+
+    //phases of a solve, in order
+    public static final String LOADING = "loading";
+    public static final String SEARCHING = "searching";
+    public static final String WRITING = "writing";
+    public static final String DONE = "done";
+
+    private final String board;
+    private volatile String phase = LOADING;
+    /**
+     * System.nanoTime() when the current phase began
+     */
+    private volatile long phaseStart = System.nanoTime();
+    private volatile long parseNanos = 0;
+    private volatile long searchNanos = 0;
+    private volatile long outputNanos = 0;
+
+    private volatile long statesGenerated = 0;
+    private volatile long statesExpanded = 0;
+    private volatile long statesPruned = 0;
+    private volatile long peakStorageSize = 0;
+    private volatile long solutionsFound = 0;
+
+    /**
+     * thread whose allocations are counted, or null until register()
+     */
+    private com.sun.management.ThreadMXBean threads;
+    private long threadId;
+    private long allocatedBefore;
+    /**
+     * bytes allocated up to unregister(), or -1 while still counting
+     */
+    private volatile long bytesAllocated = -1;
+
+    /**
+     * Start timing the loading of a board.
+     *
+     * @param board file name of the board
+     */
+    public TracerStats(String board) {
+        this.board = board;
+    }
+
+    /**
+     * Register these stats with the platform MBean server, replacing the
+     * stats of any earlier solve in this JVM, and start counting the bytes
+     * allocated by the calling thread. Timing restarts afterwards, so the
+     * time taken to start the MBean server is not counted as loading.
+     *
+     * @throws JMException if the stats cannot be registered
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadId = Thread.currentThread().threadId();
+        allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Stop counting allocated bytes and remove these stats from the MBean
+     * server, if they are still the ones registered.
+     */
+    public void unregister() {
+        if (threads == null) {
+            return;
+        }
+        bytesAllocated = getBytesAllocated();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name) && server.getObjectInstance(name).getClassName().equals(getClass().getName())) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            //already replaced by a later solve
+        }
+    }
+
+    /**
+     * End the current phase, adding its time to that phase's total, and start another.
+     *
+     * @param next LOADING, SEARCHING, WRITING or DONE
+     */
+    public void beginPhase(String next) {
+        long now = System.nanoTime();
+        switch (phase) {
+            case LOADING:
+                parseNanos += now - phaseStart;
+                break;
+            case SEARCHING:
+                searchNanos += now - phaseStart;
+                break;
+            case WRITING:
+                outputNanos += now - phaseStart;
+                break;
+        }
+        phase = next;
+        phaseStart = now;
+    }
+
+    /**
+     * Replace the counters with the latest counts of the search. The tracer
+     * keeps its counts in plain fields of its own and publishes them every so
+     * often, so the search loops never write these volatile fields.
+     *
+     * @param generated   number of TraceStates created
+     * @param expanded    number of TraceStates taken out of storage
+     * @param pruned      number of TraceStates dropped without being expanded
+     * @param peakStorage most TraceStates held in storage at once
+     * @param solutions   number of solutions passed to the tracer
+     */
+    public void publish(long generated, long expanded, long pruned, long peakStorage, long solutions) {
+        statesGenerated = generated;
+        statesExpanded = expanded;
+        statesPruned = pruned;
+        peakStorageSize = peakStorage;
+        solutionsFound = solutions;
+    }
+
+    @Override
+    public String getBoard() {
+        return board;
+    }
+
+    @Override
+    public String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public long getStatesGenerated() {
+        return statesGenerated;
+    }
+
+    @Override
+    public long getStatesExpanded() {
+        return statesExpanded;
+    }
+
+    @Override
+    public long getStatesPruned() {
+        return statesPruned;
+    }
+
+    @Override
+    public long getPeakStorageSize() {
+        return peakStorageSize;
+    }
+
+    @Override
+    public long getSolutionsFound() {
+        return solutionsFound;
+    }
+
+    @Override
+    public long getParseMillis() {
+        return millis(parseNanos, LOADING);
+    }
+
+    @Override
+    public long getSearchMillis() {
+        return millis(searchNanos, SEARCHING);
+    }
+
+    @Override
+    public long getOutputMillis() {
+        return millis(outputNanos, WRITING);
+    }
+
+    /**
+     * @return total time of a phase in milliseconds, including the time so far if it is the current phase
+     */
+    private long millis(long nanos, String of) {
+        String current = phase;
+        long start = phaseStart;
+        if (current.equals(of)) {
+            nanos += System.nanoTime() - start;
+        }
+        return nanos / 1_000_000;
+    }
+
+    @Override
+    public long getBytesAllocated() {
+        if (bytesAllocated >= 0 || threads == null) {
+            return Math.max(0, bytesAllocated);
+        }
+        return threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "stats for " + board + ":\n"
+                + "  states generated: " + statesGenerated + "\n"
+                + "  states expanded:  " + statesExpanded + "\n"
+                + "  states pruned:    " + statesPruned + "\n"
+                + "  peak storage:     " + peakStorageSize + "\n"
+                + "  solutions found:  " + solutionsFound + "\n"
+                + "  parse time:       " + getParseMillis() + " ms\n"
+                + "  search time:      " + getSearchMillis() + " ms\n"
+                + "  output time:      " + getOutputMillis() + " ms\n"
+                + "  bytes allocated:  " + getBytesAllocated();
+    }
+
+} // class TracerStats
@@ -0,0 +1,62 @@
+/**
+ * Management interface of TracerStats, so a solve in progress can be watched
+ * from JConsole or any other JMX client.
+ *
+ * @author harrisonjansenvanbeek
+ */
+public interface TracerStatsMBean {
+    /**
+     * @return file name of the board being traced
+     */
+    String getBoard();
+
+    /**
+     * @return what the tracer is doing: loading, searching, writing or done
+     */
+    String getPhase();
+
+    /**
+     * @return number of TraceStates created by the search
+     */
+    long getStatesGenerated();
+
+    /**
+     * @return number of TraceStates taken out of storage by the search
+     */
+    long getStatesExpanded();
+
+    /**
+     * @return number of TraceStates dropped because they could not lead to a shortest trace
+     */
+    long getStatesPruned();
+
+    /**
+     * @return most TraceStates held in storage at once
+     */
+    long getPeakStorageSize();
+
+    /**
+     * @return number of solutions found, including ones a shorter solution later replaced
+     */
+    long getSolutionsFound();
+
+    /**
+     * @return milliseconds spent loading the board
+     */
+    long getParseMillis();
+
+    /**
+     * @return milliseconds spent searching, not counting time spent writing solutions
+     */
+    long getSearchMillis();
+
+    /**
+     * @return milliseconds spent writing solutions
+     */
+    long getOutputMillis();
+
+    /**
+     * @return bytes allocated on the tracing thread so far
+     */
+    long getBytesAllocated();
+}